@@ -0,0 +1,49 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContextBuilder;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of getting an HTTP client for a request: built per request as ECXSdk used to do, against
+ * looking it up in {@link ECXHttpClientPool}.
+ */
+@State(Scope.Benchmark)
+public class ClientConstructionBenchmark {
+
+    private static final String URL = "https://ecx.example.com/api";
+
+    @Benchmark
+    public CloseableHttpClient perRequestProduction() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            return client;
+        }
+    }
+
+    @Benchmark
+    public CloseableHttpClient perRequestSelfSigned() throws Exception {
+        SSLContextBuilder builder = new SSLContextBuilder();
+        builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
+        SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(builder.build(), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        try (CloseableHttpClient client = HttpClients.custom().setSSLSocketFactory(sslsf).build()) {
+            return client;
+        }
+    }
+
+    @Benchmark
+    public CloseableHttpClient pooled() {
+        return ECXHttpClientPool.getClient(URL, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ECXHttpClientPool.shutdown();
+    }
+}
@@ -0,0 +1,190 @@
+package com.catalogic.ecx.sdk;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load and soak driver: runs many concurrent ECX build steps against a {@link StubECXServer}.
+ * <p>
+ * Each simulated build does what {@code ECXCDMBuilder.perform} does for one job on its own
+ * executor thread: connect, launch, wait on the shared {@link ECXStatusPoller} with the default
+ * backoff schedule, then fetch the job result. Options are given as {@code key=value}:
+ * <pre>
+ *   builds=200 rounds=1 jobs=200 latency=20 duration=30000 durationJitter=0.5
+ *   errorRate=0 failureRate=0 maxWait=600 gzip=false conditional=false
+ * </pre>
+ * The report lists requests per endpoint type, connections opened, peak concurrent requests,
+ * thread usage, the client side {@link ECXMetrics} and how long builds took to notice that their
+ * job had finished.
+ * <p>
+ * This drives the SDK only, with a fixed backoff schedule; {@code ECXCDMBuilderLoadTest} in the
+ * plugin's tests runs the real build step in freestyle builds against the same stub.
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+
+        int builds = intOption(options, "builds", 200);
+        int rounds = intOption(options, "rounds", 1);
+        int jobs = intOption(options, "jobs", builds);
+        int maxWait = intOption(options, "maxWait", 600);
+
+        try (StubECXServer stub = new StubECXServer(jobs, 32)) {
+            stub.setLatency(intOption(options, "latency", 20));
+            stub.setJobDuration(intOption(options, "duration", 30000), doubleOption(options, "durationJitter", 0.5));
+            stub.setErrorRate(doubleOption(options, "errorRate", 0));
+            stub.setFailureRate(doubleOption(options, "failureRate", 0));
+            stub.setCompression(Boolean.parseBoolean(options.get("gzip")));
+            stub.setConditionalGets(Boolean.parseBoolean(options.get("conditional")));
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            int baselineThreads = threads.getThreadCount();
+            threads.resetPeakThreadCount();
+
+            for (int round = 1; round <= rounds; round++) {
+                long start = System.currentTimeMillis();
+                List<Long> detection = runRound(stub, builds, jobs, maxWait);
+                long elapsed = System.currentTimeMillis() - start;
+
+                System.out.println("Round " + round + " of " + rounds + ": " + builds + " builds in " + elapsed + " ms");
+                report(stub, detection, baselineThreads, threads.getPeakThreadCount());
+            }
+        } finally {
+            ECXStatusPoller.shutdown();
+            ECXHttpClientPool.shutdown();
+        }
+    }
+
+    private static List<Long> runRound(final StubECXServer stub, int builds, int jobs, final int maxWait) throws Exception {
+        final List<Long> detection = Collections.synchronizedList(new ArrayList<Long>());
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+
+        ExecutorService executors = Executors.newFixedThreadPool(builds);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < builds; i++) {
+                final String jobId = String.valueOf(1000 + i % jobs);
+                running.add(executors.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            long detected = runBuild(stub.getUrl(), jobId, maxWait);
+                            long ended = stub.getJobEndTime(jobId);
+                            if (ended > 0) {
+                                detection.add(detected - ended);
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            firstFailure.compareAndSet(null, e);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> build : running) {
+                build.get();
+            }
+        } finally {
+            executors.shutdownNow();
+        }
+
+        if (failed.get() > 0) {
+            System.out.println("  builds failed with an error: " + failed.get() + ", the first one with:");
+            firstFailure.get().printStackTrace(System.out);
+        }
+        return detection;
+    }
+
+    /**
+     * @return when the build saw its job finish
+     */
+    private static long runBuild(String url, String jobId, int maxWait) throws Exception {
+        ECXSdk ecx = new ECXSdk("admin", "password", url, false);
+        ecx.connect();
+        ecx.runJob(jobId);
+
+        String lastMessage = "";
+        Iterator<String> launchMessages = ecx.getStatus();
+        while (launchMessages.hasNext()) {
+            lastMessage = launchMessages.next();
+            launchMessages.remove();
+        }
+
+        PollSchedule schedule = new BackoffPollSchedule(10, 500, 2000, 1.5, 30000, 0.2);
+        ECXJobWatch watch = ECXStatusPoller.watch("admin", "password", url, false, jobId, schedule, null);
+
+        long deadline = System.currentTimeMillis() + maxWait * 1000L;
+        String msg = "";
+        try {
+            while (!ECXJobState.isTerminal(msg) && System.currentTimeMillis() < deadline) {
+                msg = watch.awaitChange(lastMessage, deadline - System.currentTimeMillis());
+                lastMessage = msg;
+            }
+        } finally {
+            watch.cancel();
+        }
+        long detected = System.currentTimeMillis();
+
+        ecx.getJobResult(jobId);
+        return detected;
+    }
+
+    private static void report(StubECXServer stub, List<Long> detection, int baselineThreads, int peakThreads) {
+        System.out.println("  requests: " + stub.getTotalRequests() + " " + stub.getRequestCounts()
+                + ", injected errors: " + stub.getInjectedErrors() + ", not modified: " + stub.getNotModified()
+                + ", bytes sent: " + stub.getBytesSent());
+        System.out.println("  connections opened: " + stub.getConnectionsOpened()
+                + ", peak concurrent requests: " + stub.getPeakConcurrentRequests());
+        System.out.println("  threads: baseline " + baselineThreads + ", peak " + peakThreads);
+        for (Map.Entry<String, ECXRequestStats.Summary> entry : ECXMetrics.getRequests().summarize().entrySet()) {
+            ECXRequestStats.Summary summary = entry.getValue();
+            System.out.println("  client " + entry.getKey() + ": " + summary.getCount() + " requests, "
+                    + summary.getErrors() + " errors, " + summary.getBytes() + " bytes, latency (ms) p50 "
+                    + summary.getPercentileMillis(50) + ", p99 " + summary.getPercentileMillis(99) + ", max " + summary.getMaxMillis());
+        }
+
+        if (detection.isEmpty()) {
+            return;
+        }
+        List<Long> sorted = new ArrayList<>(detection);
+        Collections.sort(sorted);
+        System.out.println("  completion detected after (ms): p50 " + percentile(sorted, 50)
+                + ", p95 " + percentile(sorted, 95) + ", p99 " + percentile(sorted, 99)
+                + ", max " + sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double doubleOption(Map<String, String> options, String key, double defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,110 @@
+package com.catalogic.ecx.sdk;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Response handling of each ECXSdk request type: the streaming {@link JSONStreamExtractor} path
+ * against the previous read-into-a-String-then-build-a-DOM path.
+ */
+@State(Scope.Benchmark)
+public class ResponseParsingBenchmark {
+
+    @Param({"SESSIONID", "JOB", "JOBMONITOR", "JOBRESULT", "JOBS"})
+    public String property;
+
+    @Param({"5000"})
+    public int jobCount;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        switch (property) {
+            case "SESSIONID":
+                payload = Payloads.session().getBytes(Payloads.UTF8);
+                break;
+            case "JOBS":
+                payload = Payloads.jobs(jobCount).getBytes(Payloads.UTF8);
+                break;
+            default:
+                payload = Payloads.job("1001", "ACTIVE").getBytes(Payloads.UTF8);
+        }
+    }
+
+    @Benchmark
+    public Object streaming() throws Exception {
+        InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(payload), Payloads.UTF8);
+        switch (property) {
+            case "SESSIONID":
+                return JSONStreamExtractor.forProperties("sessionid").parse(reader).getString("sessionid");
+            case "JOBS": {
+                final Map<String, String> jobs = new HashMap<>();
+                JSONStreamExtractor.forArray("jobs", new JSONStreamExtractor.ElementHandler() {
+                    @Override
+                    public void onElement(Map<String, Object> element) {
+                        jobs.put((String) element.get("id"), (String) element.get("name"));
+                    }
+                }, "id", "name").parse(reader);
+                return jobs;
+            }
+            case "JOBRESULT":
+                return JSONStreamExtractor.forProperties("lastSessionStatus").parse(reader).getString("lastSessionStatus");
+            default:
+                return JSONStreamExtractor.forProperties("status").parse(reader).getString("status");
+        }
+    }
+
+    @Benchmark
+    public String convertStreamToString() throws Exception {
+        return bufferedString(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public Object bufferedDom() throws Exception {
+        JSONObject data = (JSONObject) new JSONParser().parse(bufferedString(new ByteArrayInputStream(payload)));
+        switch (property) {
+            case "SESSIONID":
+                return data.get("sessionid");
+            case "JOBS": {
+                Map<String, String> jobs = new HashMap<>();
+                for (Object object : (JSONArray) data.get("jobs")) {
+                    JSONObject job = (JSONObject) object;
+                    jobs.put((String) job.get("id"), (String) job.get("name"));
+                }
+                return jobs;
+            }
+            case "JOBRESULT":
+                return data.get("lastSessionStatus");
+            default:
+                return data.get("status");
+        }
+    }
+
+    /**
+     * The response handling ECXSdk used before responses were streamed.
+     */
+    private static String bufferedString(InputStream is) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, Payloads.UTF8))) {
+            while ((line = reader.readLine()) != null) {
+                sb.append(line + "\n");
+            }
+        }
+        return sb.toString();
+    }
+}
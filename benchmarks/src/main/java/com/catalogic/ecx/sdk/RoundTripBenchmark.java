@@ -0,0 +1,87 @@
+package com.catalogic.ecx.sdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full ECXSdk requests against an in-process {@link StubECXServer}.
+ * <p>
+ * Every request goes over the wire: the stub sends no validators, so the {@link ECXResponseCache}
+ * never answers, and the {@link ECXRequestCoalescer} keeps no finished results. Each benchmark
+ * thread logs in as its own user, so requests of concurrent threads are not coalesced either. The
+ * login itself is cached per user, see {@link ECXSessionCache}.
+ */
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private static final AtomicInteger users = new AtomicInteger();
+
+    private StubECXServer server;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubECXServer(500);
+        server.setConditionalGets(false);
+        ECXRequestCoalescer.setTtl(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ECXHttpClientPool.shutdown();
+        ECXRequestCoalescer.shutdown();
+        ECXResponseCache.shutdown();
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private String user;
+        private ECXSdk ecx;
+
+        @Setup(Level.Trial)
+        public void setUp(RoundTripBenchmark benchmark) {
+            user = "admin" + users.incrementAndGet();
+            ecx = new ECXSdk(user, "password", benchmark.server.getUrl(), false);
+            ecx.connect();
+        }
+    }
+
+    @Benchmark
+    public String monitorJob(Client client) {
+        client.ecx.monitorJob("1001");
+        return drain(client.ecx);
+    }
+
+    @Benchmark
+    public Object listJobs(Client client) {
+        client.ecx.setJobList();
+        return client.ecx.getJobList();
+    }
+
+    @Benchmark
+    public String connectAndMonitor(Client client) {
+        ECXSdk sdk = new ECXSdk(client.user, "password", server.getUrl(), false);
+        sdk.connect();
+        sdk.monitorJob("1001");
+        Iterator<String> status = sdk.getStatus();
+        return status.next();
+    }
+
+    private static String drain(ECXSdk ecx) {
+        Iterator<String> status = ecx.getStatus();
+        String last = null;
+        while (status.hasNext()) {
+            last = status.next();
+            status.remove();
+        }
+        return last;
+    }
+}
@@ -0,0 +1,60 @@
+package com.catalogic.ecx.sdk;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls quickly for the first few attempts, then backs off exponentially up to a cap.
+ * <p>
+ * Jitter only ever shortens a delay, so a status change is always detected within
+ * {@code maxInterval} of happening while builds started together drift apart.
+ */
+public class BackoffPollSchedule implements PollSchedule {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int fastPolls;
+    private final long fastInterval;
+    private final long initialInterval;
+    private final double multiplier;
+    private final long maxInterval;
+    private final double jitter;
+
+    /**
+     * @param fastPolls       number of polls made at {@code fastInterval} before backing off
+     * @param fastInterval    delay in milliseconds during the fast phase
+     * @param initialInterval first delay in milliseconds once the fast phase is over
+     * @param multiplier      growth factor applied to each following delay
+     * @param maxInterval     upper bound in milliseconds for any delay
+     * @param jitter          fraction between 0 and 1 by which a delay may be randomly shortened
+     */
+    public BackoffPollSchedule(int fastPolls, long fastInterval, long initialInterval, double multiplier, long maxInterval, double jitter) {
+        this.fastPolls = Math.max(0, fastPolls);
+        this.fastInterval = Math.max(1, fastInterval);
+        this.initialInterval = Math.max(1, initialInterval);
+        this.multiplier = Math.max(1.0, multiplier);
+        this.maxInterval = Math.max(this.initialInterval, maxInterval);
+        this.jitter = Math.min(1.0, Math.max(0.0, jitter));
+    }
+
+    @Override
+    public long nextDelay(int attempt) {
+        long delay;
+
+        if (attempt < fastPolls) {
+            delay = Math.min(fastInterval, maxInterval);
+        } else {
+            double backoff = initialInterval * Math.pow(multiplier, attempt - fastPolls);
+            delay = (long) Math.min(backoff, maxInterval);
+        }
+
+        if (jitter > 0) {
+            delay -= (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return Math.max(1, delay);
+    }
+
+    @Override
+    public long getMaxDelay() {
+        return maxInterval;
+    }
+}
@@ -0,0 +1,176 @@
+package com.catalogic.ecx.sdk;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe, non-blocking access to one ECX endpoint.
+ * <p>
+ * {@link ECXSdk} keeps the session and the last results in fields and must not be shared between
+ * threads. This client runs every call with its own {@code ECXSdk} on a bounded pool of threads
+ * and hands back an immutable result through an {@link ECXFuture}, so one client can serve any
+ * number of builds at once. The session, connections and response caches are still shared
+ * through {@link ECXSessionCache}, {@link ECXHttpClientPool} and {@link ECXRequestCoalescer}.
+ * <p>
+ * At most {@link #getMaxThreads()} calls run at a time; up to {@link #MAX_QUEUED} more wait, and
+ * beyond that calls are rejected with a {@link RejectedExecutionException}.
+ */
+public final class ECXAsyncClient {
+
+    /**
+     * More threads than pooled connections per route would only wait for a connection.
+     */
+    public final static int DEFAULT_MAX_THREADS = ECXHttpClientPool.DEFAULT_MAX_PER_ROUTE;
+
+    public final static int MAX_QUEUED = 1000;
+
+    private final static int IDLE_SECONDS = 60;
+
+    private static final Map<String, ECXAsyncClient> clients = new ConcurrentHashMap<>();
+
+    private final ECXEndpoint endpoint;
+    private final int maxThreads;
+    private final ThreadPoolExecutor executor;
+
+    public ECXAsyncClient(ECXEndpoint endpoint, int maxThreads) {
+        this.endpoint = endpoint;
+        this.maxThreads = maxThreads > 0 ? maxThreads : DEFAULT_MAX_THREADS;
+
+        final String name = "ECX async client " + endpoint.getUrl() + " #";
+        executor = new ThreadPoolExecutor(this.maxThreads, this.maxThreads, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the shared client of the endpoint, replacing the one of an earlier password
+     */
+    public static synchronized ECXAsyncClient forEndpoint(ECXEndpoint endpoint) {
+        String key = endpoint.getUrl() + "|" + endpoint.getUser() + "|" + endpoint.isProduction();
+
+        ECXAsyncClient client = clients.get(key);
+        if (client == null || !client.endpoint.equals(endpoint)) {
+            // a replaced client is not closed, builds may still hold it; its threads end once idle
+            client = new ECXAsyncClient(endpoint, DEFAULT_MAX_THREADS);
+            clients.put(key, client);
+        }
+        return client;
+    }
+
+    public static synchronized void shutdown() {
+        for (ECXAsyncClient client : clients.values()) {
+            for (Runnable queued : client.executor.shutdownNow()) {
+                ((ECXFuture<?>) queued).cancel(false);
+            }
+        }
+        clients.clear();
+    }
+
+    /**
+     * Logs in, or checks that the cached session of the endpoint can be used.
+     */
+    public ECXFuture<Void> connectAsync() {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                connect();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Starts the job. The result carries the status ECX answered the launch with.
+     */
+    public ECXFuture<ECXJobStatus> runJobAsync(final String jobId) {
+        return submit(new Callable<ECXJobStatus>() {
+            @Override
+            public ECXJobStatus call() {
+                ECXSdk ecx = connect();
+                ecx.runJob(jobId);
+                return new ECXJobStatus(jobId, ecx.getLastStatus(), null);
+            }
+        });
+    }
+
+    public ECXFuture<ECXJobStatus> getJobStatusAsync(String jobId) {
+        return getJobStatusAsync(jobId, null);
+    }
+
+    /**
+     * @param requestStats also counts the requests of the call, e.g. those of one build, may be null
+     */
+    public ECXFuture<ECXJobStatus> getJobStatusAsync(final String jobId, final ECXRequestStats requestStats) {
+        return submit(new Callable<ECXJobStatus>() {
+            @Override
+            public ECXJobStatus call() {
+                return connect(requestStats).getJobInfo(jobId);
+            }
+        });
+    }
+
+    /**
+     * @return an unmodifiable map of job id to job label, sorted by name
+     */
+    public ECXFuture<Map<String, String>> listJobsAsync() {
+        return submit(new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() {
+                ECXSdk ecx = connect();
+                ecx.setJobList();
+                return ecx.getJobList();
+            }
+        });
+    }
+
+    public ECXEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Rejects further calls. Calls already made still complete, then the threads end. Only for
+     * clients made with the constructor; a client from {@link #forEndpoint} may be shared.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    private ECXSdk connect() {
+        return connect(null);
+    }
+
+    private ECXSdk connect(ECXRequestStats requestStats) {
+        ECXSdk ecx = new ECXSdk(endpoint);
+        if (requestStats != null) {
+            ecx.setRequestStats(requestStats);
+        }
+        ecx.connect();
+        return ecx;
+    }
+
+    private <T> ECXFuture<T> submit(Callable<T> call) {
+        ECXFuture<T> future = new ECXFuture<>(call);
+        executor.execute(future);
+        return future;
+    }
+}
@@ -0,0 +1,11 @@
+package com.catalogic.ecx.sdk;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker of an ECX endpoint is open.
+ */
+public class ECXCircuitOpenException extends RuntimeException {
+
+    public ECXCircuitOpenException(String url, long retryInMillis) {
+        super("ECX at " + url + " is failing, requests are paused for another " + (retryInMillis + 999) / 1000 + " seconds");
+    }
+}
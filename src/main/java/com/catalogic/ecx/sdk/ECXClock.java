@@ -0,0 +1,31 @@
+package com.catalogic.ecx.sdk;
+
+/**
+ * Wall clock for the TTLs of the SDK's caches and the open time of its circuit breakers. Tests move
+ * it forward instead of sleeping until an entry expires or a circuit half-opens.
+ */
+final class ECXClock {
+
+    private static volatile long offset;
+
+    private ECXClock() {
+    }
+
+    static long currentTimeMillis() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    /**
+     * Moves the clock forward by {@code millis}.
+     */
+    static synchronized void advance(long millis) {
+        offset += millis;
+    }
+
+    /**
+     * Sets the clock back to the system time.
+     */
+    static void reset() {
+        offset = 0;
+    }
+}
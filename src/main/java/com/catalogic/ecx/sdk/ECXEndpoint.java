@@ -0,0 +1,72 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+
+/**
+ * The address and login of one ECX appliance.
+ * <p>
+ * The password is kept in plain text, since it is needed to log in. A serialized endpoint, e.g. one
+ * sent to an agent, carries it as well; do not persist one.
+ */
+public final class ECXEndpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String user;
+    private final String password;
+    private final String url;
+    private final boolean production;
+
+    public ECXEndpoint(String user, String password, String url, boolean production) {
+        this.user = user;
+        this.password = password;
+        this.url = url;
+        this.production = production;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isProduction() {
+        return production;
+    }
+
+    /**
+     * @return the endpoint's health, registering the endpoint for background probing
+     */
+    public ECXEndpointHealth getHealth() {
+        return ECXEndpointHealth.register(user, password, url, production);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ECXEndpoint)) {
+            return false;
+        }
+        ECXEndpoint other = (ECXEndpoint) o;
+        return production == other.production && equal(url, other.url) && equal(user, other.user) && equal(password, other.password);
+    }
+
+    @Override
+    public int hashCode() {
+        return (url == null ? 0 : url.hashCode()) * 31 + (user == null ? 0 : user.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,181 @@
+package com.catalogic.ecx.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Protects an ECX endpoint from the controller: a token bucket limits the request rate and a
+ * circuit breaker stops sending requests for a while once several in a row failed.
+ * <p>
+ * The breaker is closed while requests succeed. After {@code failureThreshold} consecutive
+ * transient failures it opens and requests fail fast with {@link ECXCircuitOpenException}. When
+ * the open time has passed one probe request is let through (half open); its outcome closes the
+ * breaker again or reopens it.
+ */
+public final class ECXEndpointGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXEndpointGuard.class);
+
+    public final static int DEFAULT_REQUEST_RATE = 20;
+    public final static int DEFAULT_REQUEST_BURST = 40;
+    public final static int DEFAULT_MAX_RETRIES = 2;
+    public final static int DEFAULT_FAILURE_THRESHOLD = 5;
+    public final static int DEFAULT_OPEN_TIME = 30;
+
+    private final static long RETRY_BACKOFF = 500;
+    private final static long MAX_RETRY_BACKOFF = 5000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final ConcurrentHashMap<String, ECXEndpointGuard> guards = new ConcurrentHashMap<>();
+
+    private static volatile double rate = DEFAULT_REQUEST_RATE;
+    private static volatile int burst = DEFAULT_REQUEST_BURST;
+    private static volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private static volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private static volatile long openTime = DEFAULT_OPEN_TIME * 1000L;
+
+    private final String url;
+
+    private double tokens = burst;
+    private long refilledAt = System.nanoTime();
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    private ECXEndpointGuard(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @param requestsPerSecond sustained request rate allowed per ECX endpoint
+     * @param requestBurst      requests allowed at once after a quiet period
+     * @param retries           retries of a failed idempotent request
+     * @param threshold         consecutive failures that open the circuit
+     * @param openSeconds       how long the circuit stays open before a probe
+     */
+    public static synchronized void configure(int requestsPerSecond, int requestBurst, int retries, int threshold, int openSeconds) {
+        rate = requestsPerSecond > 0 ? requestsPerSecond : DEFAULT_REQUEST_RATE;
+        burst = requestBurst > 0 ? requestBurst : DEFAULT_REQUEST_BURST;
+        maxRetries = retries >= 0 ? retries : DEFAULT_MAX_RETRIES;
+        failureThreshold = threshold > 0 ? threshold : DEFAULT_FAILURE_THRESHOLD;
+        openTime = (openSeconds > 0 ? openSeconds : DEFAULT_OPEN_TIME) * 1000L;
+    }
+
+    public static ECXEndpointGuard forEndpoint(String url) {
+        ECXEndpointGuard guard = guards.get(url);
+        if (guard == null) {
+            guards.putIfAbsent(url, new ECXEndpointGuard(url));
+            guard = guards.get(url);
+        }
+        return guard;
+    }
+
+    public static void shutdown() {
+        guards.clear();
+    }
+
+    /**
+     * @return true for failures worth retrying later: I/O errors, 5xx and 429 answers and an open circuit
+     */
+    public static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ECXCircuitOpenException || t instanceof IOException) {
+                return true;
+            }
+            if (t instanceof ECXResponseException) {
+                int status = ((ECXResponseException) t).getStatusCode();
+                return status >= 500 || status == 429;
+            }
+        }
+        return false;
+    }
+
+    static int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return how long to wait before retry number {@code attempt}, starting at 1
+     */
+    static long retryDelay(int attempt) {
+        long delay = Math.min(MAX_RETRY_BACKOFF, RETRY_BACKOFF << Math.min(attempt - 1, 10));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Waits for a request token, then checks the circuit. A caller that gets through must report
+     * the outcome with {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @throws ECXCircuitOpenException if the circuit is open
+     */
+    void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            if (state == State.OPEN && openedAt + openTime > ECXClock.currentTimeMillis()) {
+                checkCircuit();
+            }
+
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+            refilledAt = now;
+
+            // take the token now, possibly going into debt, and wait until it would have been there
+            tokens -= 1;
+            wait = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * 1000);
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        synchronized (this) {
+            checkCircuit();
+        }
+    }
+
+    private void checkCircuit() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long remaining = openedAt + openTime - ECXClock.currentTimeMillis();
+        if (state == State.OPEN && remaining <= 0) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN && !probing) {
+            probing = true;
+            return;
+        }
+        throw new ECXCircuitOpenException(url, Math.max(0, remaining));
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("ECX at " + url + " is answering again, closing the circuit");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            logger.warn("ECX at " + url + " failed " + failures + " times in a row, pausing requests for " + openTime / 1000 + " seconds");
+            state = State.OPEN;
+            openedAt = ECXClock.currentTimeMillis();
+            probing = false;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.catalogic.ecx.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reachability of the ECX endpoints builds have used recently.
+ * <p>
+ * A periodic caller runs {@link #probeAll()}, which pings every endpoint through the shared
+ * session cache and connection pool. That keeps an authenticated session and a pooled connection
+ * warm between builds and records the round trip time. A build asks {@link #checkReachable()}
+ * before launching; an endpoint seen down is probed once more so a recovered appliance is not
+ * turned away, while a dead one fails within the connect timeout instead of hanging.
+ * <p>
+ * A login ECX rejects is not tried every round, since repeated failed logins can lock the account
+ * out: the endpoint is probed again after {@link #LOGIN_REJECTED_BACKOFF}, doubling up to
+ * {@link #MAX_LOGIN_REJECTED_BACKOFF}, and builds are left to their own single login meanwhile.
+ */
+public final class ECXEndpointHealth {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXEndpointHealth.class);
+
+    /**
+     * Endpoints no build has used for this long are no longer probed.
+     */
+    public final static long FORGET_AFTER = 24 * 60 * 60 * 1000L;
+
+    /**
+     * How long probing pauses after ECX first rejected the login.
+     */
+    public final static long LOGIN_REJECTED_BACKOFF = 5 * 60 * 1000L;
+
+    public final static long MAX_LOGIN_REJECTED_BACKOFF = 60 * 60 * 1000L;
+
+    private static final ConcurrentHashMap<String, ECXEndpointHealth> endpoints = new ConcurrentHashMap<>();
+
+    private final String user;
+    private final String password;
+    private final String url;
+    private final boolean production;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+    private volatile long lastProbe;
+    private volatile long latencyMillis = -1;
+    private volatile boolean up = true;
+    private volatile String lastError;
+    private volatile int consecutiveFailures;
+    private volatile boolean loginRejected;
+    private volatile long loginBackoff;
+    private volatile long nextProbe;
+
+    private ECXEndpointHealth(String user, String password, String url, boolean production) {
+        this.user = user;
+        this.password = password == null ? "" : password;
+        this.url = url;
+        this.production = production;
+    }
+
+    /**
+     * Records that a build is about to use the endpoint, so it gets probed from now on.
+     *
+     * @return the endpoint's health
+     */
+    public static ECXEndpointHealth register(String user, String password, String url, boolean production) {
+        String key = key(user, url, production);
+
+        ECXEndpointHealth health = endpoints.get(key);
+        if (health == null || !health.password.equals(password == null ? "" : password)) {
+            ECXEndpointHealth fresh = new ECXEndpointHealth(user, password, url, production);
+            if (health == null) {
+                health = endpoints.putIfAbsent(key, fresh);
+                health = health == null ? fresh : health;
+            } else {
+                endpoints.put(key, fresh);
+                health = fresh;
+            }
+        }
+        health.lastUsed = System.currentTimeMillis();
+        return health;
+    }
+
+    /**
+     * @return the endpoint's health if a build used it, without contacting ECX
+     */
+    public static ECXEndpointHealth getIfPresent(String user, String url, boolean production) {
+        return endpoints.get(key(user, url, production));
+    }
+
+    /**
+     * @return the endpoints being probed, in no particular order
+     */
+    public static List<ECXEndpointHealth> getEndpoints() {
+        return new ArrayList<>(endpoints.values());
+    }
+
+    /**
+     * Probes every endpoint used within {@link #FORGET_AFTER} and forgets the others, skipping
+     * endpoints that rejected the login until their backoff has passed.
+     */
+    public static void probeAll() {
+        long now = System.currentTimeMillis();
+        for (Iterator<ECXEndpointHealth> it = endpoints.values().iterator(); it.hasNext(); ) {
+            ECXEndpointHealth health = it.next();
+            if (now - health.lastUsed > FORGET_AFTER) {
+                it.remove();
+                continue;
+            }
+            if (now >= health.nextProbe) {
+                health.probe();
+            }
+        }
+    }
+
+    public static int countUp() {
+        int count = 0;
+        for (ECXEndpointHealth health : endpoints.values()) {
+            if (health.up) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static int countDown() {
+        return endpoints.size() - countUp();
+    }
+
+    public static void shutdown() {
+        endpoints.clear();
+    }
+
+    /**
+     * Logs in if needed and pings the endpoint, recording the outcome and round trip time. The
+     * ping goes straight to ECX, past the rate limit and request sharing, so the time is the round
+     * trip alone.
+     *
+     * @return whether the endpoint answered
+     */
+    public boolean probe() {
+        try {
+            ECXSdk ecx = new ECXSdk(user, password, url, production);
+            ecx.connect();
+            latencyMillis = ecx.ping();
+
+            lastError = null;
+            consecutiveFailures = 0;
+            loginRejected = false;
+            loginBackoff = 0;
+            nextProbe = 0;
+            if (!up) {
+                logger.info("ECX at " + url + " is reachable again");
+            }
+            up = true;
+        } catch (RuntimeException e) {
+            lastError = describe(e);
+            consecutiveFailures++;
+            if (isLoginRejected(e)) {
+                loginRejected = true;
+                loginBackoff = loginBackoff == 0 ? LOGIN_REJECTED_BACKOFF : Math.min(MAX_LOGIN_REJECTED_BACKOFF, loginBackoff * 2);
+                nextProbe = System.currentTimeMillis() + loginBackoff;
+                logger.warn("ECX at " + url + " rejected the login of " + user + ", probing again in " + loginBackoff / 60000 + " minutes: " + lastError);
+            } else if (up) {
+                logger.warn("ECX at " + url + " is unreachable: " + lastError);
+            }
+            up = false;
+        } finally {
+            lastProbe = System.currentTimeMillis();
+        }
+        return up;
+    }
+
+    /**
+     * Answers from the last probe while the endpoint is up, and probes again when it was seen down.
+     * After a rejected login nothing is sent: the build goes ahead and its own login reports
+     * whether the credentials work now.
+     *
+     * @return whether a build should go ahead; see {@link #getLastError()} if not
+     */
+    public boolean checkReachable() {
+        return up || loginRejected || probe();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public boolean isProduction() {
+        return production;
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    /**
+     * @return the round trip time of the last successful probe in milliseconds, or -1 if none succeeded
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return when the endpoint was last probed, or 0 if it was not probed yet
+     */
+    public long getLastProbe() {
+        return lastProbe;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return whether ECX rejected the login at the last probe
+     */
+    public boolean isLoginRejected() {
+        return loginRejected;
+    }
+
+    private static boolean isLoginRejected(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ECXResponseException) {
+                return ((ECXResponseException) t).isUnauthorized();
+            }
+        }
+        return false;
+    }
+
+    private static String describe(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        String message = cause.getMessage();
+        return message == null ? cause.getClass().getSimpleName() : cause.getClass().getSimpleName() + ": " + message;
+    }
+
+    private static String key(String user, String url, boolean production) {
+        return url + "|" + user + "|" + production;
+    }
+}
@@ -0,0 +1,91 @@
+package com.catalogic.ecx.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How to choose among ECX appliances that can run the same job.
+ * <p>
+ * Appliances that the last health probe found down always come last. Load is the number of jobs
+ * this controller is waiting on at the appliance, see {@link ECXStatusPoller#getWatchedJobs(String)};
+ * jobs started by other Jenkins controllers, schedules or users on the appliance are not seen.
+ * Latency is the round trip of the last probe. Ties are broken at random so equal appliances share
+ * the work.
+ */
+public enum ECXEndpointSelection {
+
+    LEAST_LOADED("Fewest jobs this Jenkins waits on"),
+    LOWEST_LATENCY("Lowest round trip time");
+
+    private final String displayName;
+
+    ECXEndpointSelection(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @param candidates the choices with the appliance each one runs on, in configuration order
+     * @return the choices, best first
+     */
+    public <T> List<T> rank(Map<T, ECXEndpoint> candidates) {
+        List<Candidate<T>> ranked = new ArrayList<>();
+        for (Map.Entry<T, ECXEndpoint> entry : candidates.entrySet()) {
+            ECXEndpoint endpoint = entry.getValue();
+            ECXEndpointHealth health = endpoint.getHealth();
+            long latency = health.getLatencyMillis();
+            ranked.add(new Candidate<>(entry.getKey(), health.isUp(),
+                    ECXStatusPoller.getWatchedJobs(endpoint.getUrl()), latency < 0 ? Long.MAX_VALUE : latency));
+        }
+
+        Collections.shuffle(ranked);
+        Collections.sort(ranked, new Comparator<Candidate<T>>() {
+            @Override
+            public int compare(Candidate<T> a, Candidate<T> b) {
+                if (a.up != b.up) {
+                    return a.up ? -1 : 1;
+                }
+                int byLoad = compareLong(a.load, b.load);
+                int byLatency = compareLong(a.latency, b.latency);
+                if (ECXEndpointSelection.this == LEAST_LOADED) {
+                    return byLoad != 0 ? byLoad : byLatency;
+                }
+                return byLatency != 0 ? byLatency : byLoad;
+            }
+        });
+
+        List<T> result = new ArrayList<>();
+        for (Candidate<T> candidate : ranked) {
+            result.add(candidate.choice);
+        }
+        return result;
+    }
+
+    private static int compareLong(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * The state of one choice taken once, so the ordering stays consistent while sorting.
+     */
+    private static final class Candidate<T> {
+
+        private final T choice;
+        private final boolean up;
+        private final long load;
+        private final long latency;
+
+        private Candidate(T choice, boolean up, long load, long latency) {
+            this.choice = choice;
+            this.up = up;
+            this.load = load;
+            this.latency = latency;
+        }
+    }
+}
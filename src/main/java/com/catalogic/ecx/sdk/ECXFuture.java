@@ -0,0 +1,93 @@
+package com.catalogic.ecx.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The pending result of an {@link ECXAsyncClient} call, which can also notify callbacks when it
+ * completes so calls can be chained without blocking a thread on {@link #get()}.
+ */
+public class ECXFuture<T> extends FutureTask<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXFuture.class);
+
+    /**
+     * Receives the outcome of a future. Callbacks run on the thread that completed the future, or
+     * on the caller's thread if it had already completed, and should not block.
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        /**
+         * @param failure what the call threw, or a {@link CancellationException} if it was cancelled
+         */
+        void onFailure(Throwable failure);
+    }
+
+    private List<Callback<? super T>> callbacks = new ArrayList<>();
+
+    ECXFuture(Callable<T> callable) {
+        super(callable);
+    }
+
+    public void addCallback(Callback<? super T> callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        deliver(callback);
+    }
+
+    @Override
+    protected void done() {
+        List<Callback<? super T>> pending;
+        synchronized (this) {
+            pending = callbacks;
+            callbacks = null;
+        }
+        for (Callback<? super T> callback : pending) {
+            deliver(callback);
+        }
+    }
+
+    private void deliver(Callback<? super T> callback) {
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException e) {
+            failed(callback, e.getCause());
+            return;
+        } catch (CancellationException e) {
+            failed(callback, e);
+            return;
+        } catch (InterruptedException e) {
+            // cannot happen, the future is done
+            Thread.currentThread().interrupt();
+            failed(callback, e);
+            return;
+        }
+        try {
+            callback.onSuccess(result);
+        } catch (RuntimeException e) {
+            logger.warn("ECX future callback failed", e);
+        }
+    }
+
+    private static void failed(Callback<?> callback, Throwable failure) {
+        try {
+            callback.onFailure(failure);
+        } catch (RuntimeException e) {
+            logger.warn("ECX future callback failed", e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContextBuilder;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived, pooled HTTP clients shared by every {@link ECXSdk} talking to the same ECX endpoint.
+ * <p>
+ * Clients are keyed by (url, production) so that self signed and strictly verified connections
+ * never share a pool. Connections are kept alive between requests and idle ones are evicted by a
+ * single background thread.
+ * <p>
+ * The plugin does not configure compression itself. HttpClient's default content compression
+ * stays on, so requests carry its {@code Accept-Encoding: gzip,deflate} and a compressed body is
+ * decoded before it is parsed; whether ECX compresses is up to the server. {@link #getWireBytes}
+ * only tells how many bytes actually came over the network.
+ */
+public final class ECXHttpClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXHttpClientPool.class);
+
+    public final static int DEFAULT_MAX_TOTAL = 50;
+    public final static int DEFAULT_MAX_PER_ROUTE = 10;
+    public final static int DEFAULT_IDLE_TIMEOUT = 30;
+    public final static int DEFAULT_CONNECT_TIMEOUT = 10;
+    public final static int DEFAULT_SOCKET_TIMEOUT = 60;
+
+    private static final Map<String, PooledClient> clients = new ConcurrentHashMap<>();
+
+    private static volatile int maxTotal = DEFAULT_MAX_TOTAL;
+    private static volatile int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+    private static volatile int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private static volatile RequestConfig requestConfig = requestConfig(DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+
+    private static ScheduledExecutorService evictor;
+
+    private final static String WIRE_COUNTER = ECXHttpClientPool.class.getName() + ".wireCounter";
+
+    /**
+     * Runs before the content decoding interceptor, so it counts the body as received.
+     */
+    private static final HttpResponseInterceptor wireCounter = new HttpResponseInterceptor() {
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                WireCountingEntity counting = new WireCountingEntity(entity);
+                response.setEntity(counting);
+                context.setAttribute(WIRE_COUNTER, counting);
+            }
+        }
+    };
+
+    private ECXHttpClientPool() {
+    }
+
+    /**
+     * Updates the pool limits. Existing pools are resized in place.
+     *
+     * @param total              maximum number of connections per ECX endpoint pool
+     * @param perRoute           maximum number of connections per route
+     * @param idleTimeoutSeconds idle connections older than this are closed
+     */
+    public static synchronized void configure(int total, int perRoute, int idleTimeoutSeconds) {
+        maxTotal = total > 0 ? total : DEFAULT_MAX_TOTAL;
+        maxPerRoute = perRoute > 0 ? perRoute : DEFAULT_MAX_PER_ROUTE;
+        idleTimeout = idleTimeoutSeconds > 0 ? idleTimeoutSeconds : DEFAULT_IDLE_TIMEOUT;
+
+        for (PooledClient pooled : clients.values()) {
+            pooled.manager.setMaxTotal(maxTotal);
+            pooled.manager.setDefaultMaxPerRoute(maxPerRoute);
+        }
+    }
+
+    /**
+     * @param connectSeconds limit for opening a connection, and for waiting for a pooled one
+     * @param socketSeconds  limit for waiting on response data
+     */
+    public static void configureTimeouts(int connectSeconds, int socketSeconds) {
+        requestConfig = requestConfig(connectSeconds > 0 ? connectSeconds : DEFAULT_CONNECT_TIMEOUT,
+                socketSeconds > 0 ? socketSeconds : DEFAULT_SOCKET_TIMEOUT);
+    }
+
+    /**
+     * @return the timeouts to set on every request
+     */
+    static RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    private static RequestConfig requestConfig(int connectSeconds, int socketSeconds) {
+        return RequestConfig.custom()
+                .setConnectTimeout(connectSeconds * 1000)
+                .setConnectionRequestTimeout(connectSeconds * 1000)
+                .setSocketTimeout(socketSeconds * 1000)
+                .build();
+    }
+
+    /**
+     * @return the number of body bytes received for the response executed with {@code context}, before
+     * decompression, or -1 if the response had no body
+     */
+    static long getWireBytes(HttpContext context) {
+        WireCountingEntity counting = (WireCountingEntity) context.getAttribute(WIRE_COUNTER);
+        return counting == null || counting.counter == null ? -1 : counting.counter.getCount();
+    }
+
+    public static CloseableHttpClient getClient(String url, boolean production) {
+        String key = key(url, production);
+
+        PooledClient pooled = clients.get(key);
+        if (pooled == null) {
+            pooled = createClient(key, production);
+        }
+        return pooled.client;
+    }
+
+    private static synchronized PooledClient createClient(String key, boolean production) {
+        PooledClient pooled = clients.get(key);
+        if (pooled != null) {
+            return pooled;
+        }
+
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(socketFactories(production));
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+
+        // HttpClient's default content compression: it asks for gzip and deflate and decodes them
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .addInterceptorFirst(wireCounter)
+                .build();
+
+        pooled = new PooledClient(manager, client);
+        clients.put(key, pooled);
+        startEvictor();
+
+        logger.debug("Created pooled ECX http client for " + key);
+        return pooled;
+    }
+
+    private static Registry<ConnectionSocketFactory> socketFactories(boolean production) {
+        RegistryBuilder<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory());
+
+        if (production) {
+            registry.register("https", SSLConnectionSocketFactory.getSocketFactory());
+        } else {
+            try {
+                SSLContextBuilder builder = new SSLContextBuilder();
+                builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
+                registry.register("https", new SSLConnectionSocketFactory(builder.build(), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return registry.build();
+    }
+
+    private static void startEvictor() {
+        if (evictor != null) {
+            return;
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ECX idle connection evictor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections();
+            }
+        }, 5, 5, TimeUnit.SECONDS);
+    }
+
+    static void evictIdleConnections() {
+        for (PooledClient pooled : clients.values()) {
+            pooled.manager.closeExpiredConnections();
+            pooled.manager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Closes every pooled client. Called when the plugin is stopped.
+     */
+    public static synchronized void shutdown() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        for (PooledClient pooled : clients.values()) {
+            try {
+                pooled.client.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close ECX http client", e);
+            }
+        }
+        clients.clear();
+    }
+
+    private static String key(String url, boolean production) {
+        return url + "|" + production;
+    }
+
+    private static final class WireCountingEntity extends HttpEntityWrapper {
+
+        private volatile CountingInputStream counter;
+
+        private WireCountingEntity(HttpEntity wrapped) {
+            super(wrapped);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            // a streamed response hands out the same stream every time, keep counting it
+            if (counter == null || isRepeatable()) {
+                counter = new CountingInputStream(super.getContent());
+            }
+            return counter;
+        }
+    }
+
+    private static final class PooledClient {
+
+        private final PoolingHttpClientConnectionManager manager;
+        private final CloseableHttpClient client;
+
+        private PooledClient(PoolingHttpClientConnectionManager manager, CloseableHttpClient client) {
+            this.manager = manager;
+            this.client = client;
+        }
+    }
+}
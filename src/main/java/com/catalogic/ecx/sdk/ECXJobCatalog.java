@@ -0,0 +1,241 @@
+package com.catalogic.ecx.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cached, searchable list of the jobs defined on an ECX endpoint.
+ * <p>
+ * The first lookup loads the job list. Once it is older than the TTL, lookups keep answering from
+ * the stale copy while a single background refresh replaces it.
+ */
+public final class ECXJobCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXJobCatalog.class);
+
+    public final static int DEFAULT_TTL = 300;
+
+    private static final Map<String, ECXJobCatalog> catalogs = new ConcurrentHashMap<>();
+
+    private static volatile long ttl = DEFAULT_TTL * 1000L;
+
+    private static ExecutorService refresher;
+
+    private final String user;
+    private final String password;
+    private final String url;
+    private final boolean production;
+
+    private volatile Index index;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Future<?> refresh;
+
+    private ECXJobCatalog(String user, String password, String url, boolean production) {
+        this.user = user;
+        this.password = password == null ? "" : password;
+        this.url = url;
+        this.production = production;
+    }
+
+    public static synchronized ECXJobCatalog get(String user, String password, String url, boolean production) {
+        String key = key(user, url, production);
+
+        ECXJobCatalog catalog = catalogs.get(key);
+        if (catalog == null || !catalog.password.equals(password == null ? "" : password)) {
+            catalog = new ECXJobCatalog(user, password, url, production);
+            catalogs.put(key, catalog);
+        }
+        return catalog;
+    }
+
+    /**
+     * @return the catalog for the endpoint if one was loaded before, without contacting ECX
+     */
+    public static ECXJobCatalog getIfPresent(String user, String url, boolean production) {
+        return catalogs.get(key(user, url, production));
+    }
+
+    public static void setTtl(int seconds) {
+        ttl = (seconds > 0 ? seconds : DEFAULT_TTL) * 1000L;
+    }
+
+    public static synchronized void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        catalogs.clear();
+    }
+
+    /**
+     * @return job id to display label, sorted by job name
+     */
+    public Map<String, String> getJobs() {
+        return snapshot().jobs;
+    }
+
+    /**
+     * Finds jobs whose name starts with the query first, then jobs whose name or id contains it.
+     */
+    public List<Job> search(String query, int limit) {
+        return snapshot().search(query == null ? "" : query.trim().toLowerCase(), limit);
+    }
+
+    public int size() {
+        return snapshot().jobs.size();
+    }
+
+    private Index snapshot() {
+        Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    index = load();
+                }
+                return index;
+            }
+        }
+        if (ECXClock.currentTimeMillis() - current.loadedAt > ttl) {
+            refreshInBackground();
+        }
+        return current;
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresh = refresher().submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    index = load();
+                } catch (Exception e) {
+                    logger.warn("Failed to refresh the ECX job list from " + url, e);
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the background refresh started last, if any, to finish.
+     */
+    void awaitRefresh() throws Exception {
+        Future<?> pending = refresh;
+        if (pending != null) {
+            pending.get();
+        }
+    }
+
+    private Index load() {
+        ECXSdk ecx = new ECXSdk(user, password, url, production);
+        ecx.connect();
+        ecx.setJobList();
+        return new Index(ecx.getJobList());
+    }
+
+    private static synchronized ExecutorService refresher() {
+        if (refresher == null) {
+            refresher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ECX job catalog refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return refresher;
+    }
+
+    private static String key(String user, String url, boolean production) {
+        return url + "|" + user + "|" + production;
+    }
+
+    public static final class Job {
+
+        private final String id;
+        private final String label;
+
+        private Job(String id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the lower case job name followed by the id in square brackets
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Immutable snapshot of a job list with the labels sorted for prefix lookups.
+     */
+    private static final class Index {
+
+        private final long loadedAt = ECXClock.currentTimeMillis();
+        private final Map<String, String> jobs;
+        private final Job[] sorted;
+
+        private Index(Map<String, String> jobList) {
+            this.jobs = Collections.unmodifiableMap(new LinkedHashMap<>(jobList));
+
+            List<Job> all = new ArrayList<>();
+            for (Map.Entry<String, String> entry : jobs.entrySet()) {
+                all.add(new Job(entry.getKey(), entry.getValue()));
+            }
+            sorted = all.toArray(new Job[all.size()]);
+            Arrays.sort(sorted, BY_LABEL);
+        }
+
+        private List<Job> search(String query, int limit) {
+            Set<Job> matches = new LinkedHashSet<>();
+
+            int i = Arrays.binarySearch(sorted, new Job(null, query), BY_LABEL);
+            for (i = i < 0 ? -i - 1 : i; i < sorted.length && matches.size() < limit; i++) {
+                if (!sorted[i].label.startsWith(query)) {
+                    break;
+                }
+                matches.add(sorted[i]);
+            }
+
+            for (int j = 0; j < sorted.length && matches.size() < limit; j++) {
+                if (sorted[j].label.contains(query)) {
+                    matches.add(sorted[j]);
+                }
+            }
+            return new ArrayList<>(matches);
+        }
+    }
+
+    private static final Comparator<Job> BY_LABEL = new Comparator<Job>() {
+        @Override
+        public int compare(Job a, Job b) {
+            return a.label.compareTo(b.label);
+        }
+    };
+}
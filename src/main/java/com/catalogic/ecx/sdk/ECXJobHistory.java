@@ -0,0 +1,363 @@
+package com.catalogic.ecx.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How long the runs of one ECX job on one endpoint took, kept on disk across restarts.
+ * <p>
+ * Each job has a small binary file in the directory set with {@link #setDirectory(File)}: a header
+ * naming the endpoint and job, then one fixed size record per run (end time, launch to end
+ * duration and final status). Runs are appended as they end; once the file holds twice
+ * {@link #MAX_RUNS} records it is rewritten with the latest ones. Without a directory the history
+ * only lives in memory.
+ */
+public final class ECXJobHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXJobHistory.class);
+
+    /**
+     * The number of runs kept per job.
+     */
+    public final static int MAX_RUNS = 200;
+
+    /**
+     * Percentiles are computed over this many of the latest runs that did not fail.
+     */
+    public final static int PERCENTILE_WINDOW = 100;
+
+    /**
+     * The number of runs that did not fail needed before the history gives an {@link Estimate}.
+     */
+    public final static int MIN_RUNS = 5;
+
+    private final static int MAGIC = 0xEC5A0001;
+
+    private final static String[] STATUSES = {ECXJobState.COMPLETED, ECXJobState.PARTIAL, ECXJobState.FAILED, ECXJobState.IDLE};
+
+    private static final ConcurrentHashMap<String, ECXJobHistory> histories = new ConcurrentHashMap<>();
+
+    private static volatile File directory;
+
+    private final String url;
+    private final String jobId;
+
+    private List<Entry> entries;
+    private int recordsOnDisk;
+
+    private ECXJobHistory(String url, String jobId) {
+        this.url = url;
+        this.jobId = jobId;
+    }
+
+    /**
+     * @param dir where the history files are kept, created when the first run is recorded; null keeps them in memory
+     */
+    public static void setDirectory(File dir) {
+        if (dir == null ? directory != null : !dir.equals(directory)) {
+            directory = dir;
+            histories.clear();
+        }
+    }
+
+    /**
+     * @return the history of the job on the ECX server at {@code url}, under any login
+     */
+    public static ECXJobHistory get(String url, String jobId) {
+        String key = url + "|" + jobId;
+
+        ECXJobHistory history = histories.get(key);
+        if (history == null) {
+            ECXJobHistory fresh = new ECXJobHistory(url, jobId);
+            history = histories.putIfAbsent(key, fresh);
+            history = history == null ? fresh : history;
+        }
+        return history;
+    }
+
+    public static void shutdown() {
+        histories.clear();
+    }
+
+    /**
+     * Adds a run that ended. Runs that timed out or never ran should not be recorded, their duration
+     * says nothing about how long the job takes.
+     */
+    public synchronized void record(long endedAt, long durationMillis, String status) {
+        Entry entry = new Entry(endedAt, durationMillis, status);
+        load();
+        entries.add(entry);
+        if (entries.size() > MAX_RUNS) {
+            entries = new ArrayList<>(entries.subList(entries.size() - MAX_RUNS, entries.size()));
+        }
+
+        File file = getFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            if (recordsOnDisk == 0 || recordsOnDisk >= 2 * MAX_RUNS) {
+                rewrite(file);
+            } else {
+                append(file, entry);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to save the run history of ECX job " + jobId + " at " + url, e);
+        }
+    }
+
+    /**
+     * @return the kept runs, oldest first
+     */
+    public synchronized List<Entry> getEntries() {
+        load();
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * @return the expected duration of the next run, or null while fewer than {@link #MIN_RUNS} runs did not fail
+     */
+    public synchronized Estimate estimate() {
+        load();
+        List<Long> durations = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0 && durations.size() < PERCENTILE_WINDOW; i--) {
+            Entry entry = entries.get(i);
+            if (!ECXJobState.FAILED.equals(entry.status)) {
+                durations.add(entry.durationMillis);
+            }
+        }
+        if (durations.size() < MIN_RUNS) {
+            return null;
+        }
+        long[] sorted = new long[durations.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = durations.get(i);
+        }
+        Arrays.sort(sorted);
+        return new Estimate(sorted.length, percentile(sorted, 10), percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), sorted[sorted.length - 1]);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Reads the file on first use. A missing, foreign or damaged file gives an empty history, or
+     * the records up to the damage.
+     */
+    private void load() {
+        if (entries != null) {
+            return;
+        }
+        entries = new ArrayList<>();
+        recordsOnDisk = 0;
+
+        File file = getFile();
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || !url.equals(in.readUTF()) || !jobId.equals(in.readUTF())) {
+                logger.warn("Ignoring " + file + ", it is not the run history of ECX job " + jobId + " at " + url);
+                return;
+            }
+            while (true) {
+                long endedAt;
+                try {
+                    endedAt = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                long durationMillis = in.readLong();
+                byte status = in.readByte();
+                entries.add(new Entry(endedAt, durationMillis, status >= 0 && status < STATUSES.length ? STATUSES[status] : null));
+                recordsOnDisk++;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read the run history of ECX job " + jobId + " at " + url + ", keeping " + entries.size() + " runs", e);
+            // the next record rewrites the file without the damaged tail
+            recordsOnDisk = 0;
+        }
+        if (entries.size() > MAX_RUNS) {
+            entries = new ArrayList<>(entries.subList(entries.size() - MAX_RUNS, entries.size()));
+        }
+    }
+
+    private void rewrite(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(url);
+            out.writeUTF(jobId);
+            for (Entry entry : entries) {
+                write(out, entry);
+            }
+        }
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new IOException("Cannot replace " + file);
+        }
+        recordsOnDisk = entries.size();
+    }
+
+    private void append(File file, Entry entry) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            write(out, entry);
+        }
+        recordsOnDisk++;
+    }
+
+    private static void write(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.endedAt);
+        out.writeLong(entry.durationMillis);
+        out.writeByte(Arrays.asList(STATUSES).indexOf(entry.status));
+    }
+
+    /**
+     * @return the file of this history, named after the job id and a hash of the url, or null without a directory
+     */
+    private File getFile() {
+        File dir = directory;
+        if (dir == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(jobId.replaceAll("[^A-Za-z0-9_-]", "_")).append('-');
+            for (int i = 0; i < 6; i++) {
+                name.append(String.format("%02x", digest[i]));
+            }
+            return new File(dir, name.append(".bin").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One run of the job.
+     */
+    public static final class Entry {
+
+        private final long endedAt;
+        private final long durationMillis;
+        private final String status;
+
+        Entry(long endedAt, long durationMillis, String status) {
+            this.endedAt = endedAt;
+            this.durationMillis = durationMillis;
+            this.status = status;
+        }
+
+        public long getEndedAt() {
+            return endedAt;
+        }
+
+        public Date getEndedAtDate() {
+            return new Date(endedAt);
+        }
+
+        /**
+         * @return the time from launching the job to seeing it end
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return the final ECX status, or null if it was none of the known ones
+         */
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Percentiles of the launch to end duration of the latest runs that did not fail, in milliseconds.
+     */
+    public static final class Estimate implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int runs;
+        private final long p10;
+        private final long p50;
+        private final long p95;
+        private final long p99;
+        private final long max;
+
+        Estimate(int runs, long p10, long p50, long p95, long p99, long max) {
+            this.runs = runs;
+            this.p10 = p10;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of runs the percentiles are computed from
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        public long getP10() {
+            return p10;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP95() {
+            return p95;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return how long to wait for a run before giving up: the p99 duration times {@code factor}
+         */
+        public long getTimeout(double factor) {
+            return (long) (p99 * factor);
+        }
+    }
+}
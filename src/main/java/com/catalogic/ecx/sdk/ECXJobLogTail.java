@@ -0,0 +1,115 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Follows the session log of one ECX job run, returning only the entries not seen before.
+ * <p>
+ * Call {@link #begin(ECXSdk)} before launching the job so the new run's session can be told apart
+ * from the previous one, then {@link #poll(ECXSdk)} as often as wanted. Each poll asks ECX for
+ * entries from the last seen log time on, at most {@link #MAX_PAGES_PER_POLL} pages of
+ * {@code pageSize}. Only the cursor and the ids of the entries logged at the last seen time are
+ * kept, so memory stays constant however long the log grows.
+ */
+public final class ECXJobLogTail implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final static int DEFAULT_PAGE_SIZE = 100;
+    private final static int MAX_PAGES_PER_POLL = 10;
+
+    private final String jobId;
+    private final int pageSize;
+
+    private boolean begun;
+    private String previousSessionId;
+    private String sessionId;
+    private long lastLogTime;
+    private final Set<String> idsAtLastLogTime = new HashSet<>();
+
+    public ECXJobLogTail(String jobId, int pageSize) {
+        this.jobId = jobId;
+        this.pageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Remembers the job's latest session before it is launched.
+     */
+    public synchronized void begin(ECXSdk ecx) {
+        previousSessionId = ecx.getLatestJobSessionId(jobId);
+        begun = true;
+    }
+
+    /**
+     * Follows a known session, e.g. one that was launched before a restart.
+     */
+    public synchronized void follow(String sessionId) {
+        this.sessionId = sessionId;
+        begun = true;
+    }
+
+    /**
+     * @return a copy of the tail's current position that later polls do not change, e.g. to persist it
+     */
+    public synchronized ECXJobLogTail copy() {
+        ECXJobLogTail copy = new ECXJobLogTail(jobId, pageSize);
+        copy.begun = begun;
+        copy.previousSessionId = previousSessionId;
+        copy.sessionId = sessionId;
+        copy.lastLogTime = lastLogTime;
+        copy.idsAtLastLogTime.addAll(idsAtLastLogTime);
+        return copy;
+    }
+
+    /**
+     * @return the session being tailed, or null until ECX created the session of the new run
+     */
+    public synchronized String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return the entries logged since the previous poll, oldest first
+     */
+    public synchronized List<ECXLogEntry> poll(ECXSdk ecx) {
+        List<ECXLogEntry> fresh = new ArrayList<>();
+
+        if (sessionId == null) {
+            String latest = ecx.getLatestJobSessionId(jobId);
+            if (latest == null || (begun && latest.equals(previousSessionId))) {
+                return fresh;
+            }
+            sessionId = latest;
+        }
+
+        for (int page = 0; page < MAX_PAGES_PER_POLL; page++) {
+            List<ECXLogEntry> entries = ecx.getJobLogs(sessionId, lastLogTime, pageSize);
+            int added = 0;
+            for (ECXLogEntry entry : entries) {
+                if (entry.getLogTime() < lastLogTime || idsAtLastLogTime.contains(entry.getId())) {
+                    continue;
+                }
+                if (entry.getLogTime() > lastLogTime) {
+                    lastLogTime = entry.getLogTime();
+                    idsAtLastLogTime.clear();
+                }
+                idsAtLastLogTime.add(entry.getId());
+                fresh.add(entry);
+                added++;
+            }
+            if (entries.size() < pageSize) {
+                break;
+            }
+            if (added == 0) {
+                // a whole page logged at one time stamp was seen already, move past it
+                lastLogTime++;
+                idsAtLastLogTime.clear();
+            }
+        }
+        return fresh;
+    }
+}
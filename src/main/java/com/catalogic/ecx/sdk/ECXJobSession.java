@@ -0,0 +1,35 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+
+/**
+ * One run of an ECX job, as listed by {@code /endeavour/jobsession}.
+ */
+public final class ECXJobSession implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final long start;
+
+    public ECXJobSession(String id, long start) {
+        this.id = id;
+        this.start = start;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return when ECX started the run, in milliseconds since the epoch on the ECX server's clock, or 0 if it did not say
+     */
+    public long getStart() {
+        return start;
+    }
+
+    @Override
+    public String toString() {
+        return id + (start > 0 ? " started at " + start : "");
+    }
+}
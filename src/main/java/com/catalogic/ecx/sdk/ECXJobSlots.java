@@ -0,0 +1,173 @@
+package com.catalogic.ecx.sdk;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM wide limit on the ECX jobs running at the same time on one appliance.
+ * <p>
+ * Every build or step of this JVM that launches a job on an appliance first takes one of its
+ * slots and gives it back once it stopped following the job, so the limit holds across builds no
+ * matter how many jobs each of them runs in parallel. Runs that are already going when a build
+ * starts following them, after a restart or when attaching to a running job, take a slot even
+ * above the limit, since they run on the appliance either way.
+ * <p>
+ * The limit can be changed while builds wait; they are woken up and check it again.
+ */
+public final class ECXJobSlots {
+
+    /**
+     * No limit.
+     */
+    public final static int DEFAULT_MAX_JOBS = 0;
+
+    private static final ConcurrentHashMap<String, Appliance> appliances = new ConcurrentHashMap<>();
+
+    private static volatile int maxJobs = DEFAULT_MAX_JOBS;
+
+    private ECXJobSlots() {
+    }
+
+    /**
+     * @param max the number of jobs at a time per appliance, 0 for no limit
+     */
+    public static void setMaxJobs(int max) {
+        maxJobs = Math.max(0, max);
+        for (Appliance appliance : appliances.values()) {
+            appliance.limitChanged();
+        }
+    }
+
+    public static int getMaxJobs() {
+        return maxJobs;
+    }
+
+    /**
+     * @return an unheld slot on the appliance at {@code url}, to be released in a {@code finally} block
+     */
+    public static Lease lease(String url) {
+        Appliance appliance = appliances.get(url);
+        if (appliance == null) {
+            Appliance fresh = new Appliance();
+            appliance = appliances.putIfAbsent(url, fresh);
+            appliance = appliance == null ? fresh : appliance;
+        }
+        return new Lease(appliance);
+    }
+
+    /**
+     * @return the jobs holding a slot on the appliance at {@code url}
+     */
+    public static int getRunning(String url) {
+        Appliance appliance = appliances.get(url);
+        return appliance == null ? 0 : appliance.running();
+    }
+
+    /**
+     * Forgets the slots. Builds still waiting keep waiting on the old counts until a slot frees up.
+     */
+    public static void shutdown() {
+        appliances.clear();
+    }
+
+    private static final class Appliance {
+
+        private int running;
+
+        private synchronized boolean tryAcquire() {
+            int max = maxJobs;
+            if (max > 0 && running >= max) {
+                return false;
+            }
+            running++;
+            return true;
+        }
+
+        private synchronized boolean acquire(long deadline) throws InterruptedException {
+            while (!tryAcquire()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        private synchronized void claim() {
+            running++;
+        }
+
+        private synchronized void release() {
+            running--;
+            notifyAll();
+        }
+
+        private synchronized void limitChanged() {
+            notifyAll();
+        }
+
+        private synchronized int running() {
+            return running;
+        }
+    }
+
+    /**
+     * One build's hold on a slot. Not thread-safe; each job run uses its own.
+     */
+    public static final class Lease {
+
+        private final Appliance appliance;
+        private boolean held;
+
+        private Lease(Appliance appliance) {
+            this.appliance = appliance;
+        }
+
+        /**
+         * @return whether the slot is held now, false if the appliance is at its limit
+         */
+        public boolean tryAcquire() {
+            if (!held) {
+                held = appliance.tryAcquire();
+            }
+            return held;
+        }
+
+        /**
+         * Waits until the appliance has a free slot and takes it, giving up at {@code deadline}.
+         *
+         * @param deadline when to stop waiting, in milliseconds since the epoch
+         * @return whether the slot is held now, false if none freed up in time
+         */
+        public boolean acquire(long deadline) throws InterruptedException {
+            if (!held) {
+                held = appliance.acquire(deadline);
+            }
+            return held;
+        }
+
+        /**
+         * Takes a slot for a run that is already going, above the limit if need be.
+         */
+        public void claim() {
+            if (!held) {
+                appliance.claim();
+                held = true;
+            }
+        }
+
+        /**
+         * Gives the slot back, if held.
+         */
+        public void release() {
+            if (held) {
+                held = false;
+                appliance.release();
+            }
+        }
+
+        public boolean isHeld() {
+            return held;
+        }
+    }
+}
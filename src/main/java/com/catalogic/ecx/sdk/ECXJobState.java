@@ -0,0 +1,23 @@
+package com.catalogic.ecx.sdk;
+
+/**
+ * Job status values reported by ECX.
+ */
+public final class ECXJobState {
+
+    public final static String ACTIVE = "ACTIVE";
+    public final static String IDLE = "IDLE";
+    public final static String COMPLETED = "COMPLETED";
+    public final static String PARTIAL = "PARTIAL";
+    public final static String FAILED = "FAILED";
+
+    private ECXJobState() {
+    }
+
+    /**
+     * @return true once a job is no longer running and monitoring can stop.
+     */
+    public static boolean isTerminal(String status) {
+        return PARTIAL.equals(status) || FAILED.equals(status) || COMPLETED.equals(status) || IDLE.equals(status);
+    }
+}
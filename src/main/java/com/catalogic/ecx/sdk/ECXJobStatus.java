@@ -0,0 +1,51 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+
+/**
+ * What ECX reported about one job at one point in time.
+ */
+public final class ECXJobStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String jobId;
+    private final String status;
+    private final String lastSessionStatus;
+
+    public ECXJobStatus(String jobId, String status, String lastSessionStatus) {
+        this.jobId = jobId;
+        this.status = status;
+        this.lastSessionStatus = lastSessionStatus;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * @return the job's current status, e.g. {@link ECXJobState#ACTIVE} or {@link ECXJobState#IDLE}
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the outcome of the job's latest session, e.g. {@link ECXJobState#COMPLETED}, or null if ECX did not report one
+     */
+    public String getLastSessionStatus() {
+        return lastSessionStatus;
+    }
+
+    /**
+     * @return true while the job is running
+     */
+    public boolean isActive() {
+        return ECXJobState.ACTIVE.equals(status);
+    }
+
+    @Override
+    public String toString() {
+        return jobId + ": " + status + (lastSessionStatus == null ? "" : " (last session " + lastSessionStatus + ")");
+    }
+}
@@ -0,0 +1,170 @@
+package com.catalogic.ecx.sdk;
+
+import java.util.Map;
+
+/**
+ * A running ECX job registered with the {@link ECXStatusPoller}.
+ * <p>
+ * Callers either block in {@link #awaitChange(String, long)} or receive updates through a
+ * {@link Listener}. Once the job reaches a terminal status, or the watch is cancelled, the
+ * poller stops querying it.
+ */
+public final class ECXJobWatch {
+
+    /**
+     * Request type under which {@link #summarizePolls()} reports the status polls of the job.
+     */
+    public final static String POLL_TYPE = "JOBSTATUS (shared)";
+
+    public interface Listener {
+
+        void onStatus(ECXJobWatch watch, String status);
+
+        void onError(ECXJobWatch watch, Exception error);
+    }
+
+    private final String jobId;
+    private final PollSchedule schedule;
+    private final Listener listener;
+    private final ECXRequestStats polls = new ECXRequestStats();
+
+    private String status;
+    private Exception error;
+    private volatile String pollProblem;
+    private volatile boolean cancelled;
+
+    private int attempt;
+    private long nextPoll;
+    private long wokenAt;
+
+    ECXJobWatch(String jobId, PollSchedule schedule, Listener listener) {
+        this.jobId = jobId;
+        this.schedule = schedule;
+        this.listener = listener;
+        this.nextPoll = System.currentTimeMillis();
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public synchronized String getStatus() {
+        return status;
+    }
+
+    public boolean isDone() {
+        return cancelled || ECXJobState.isTerminal(getStatus());
+    }
+
+    /**
+     * Stops watching the job. The ECX job itself keeps running.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the status differs from {@code lastSeen} or the timeout expires.
+     * Returns at once when the status is terminal, even if it was seen before.
+     *
+     * @return the current status, which is still {@code lastSeen} on timeout
+     * @throws RuntimeException if polling ECX failed
+     */
+    public synchronized String awaitChange(String lastSeen, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        // a terminal status is polled no more, waiting for it to change would last the whole timeout
+        while (!cancelled && error == null && (status == null || (status.equals(lastSeen) && !ECXJobState.isTerminal(status)))) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            wait(remaining);
+        }
+
+        if (error != null) {
+            Exception e = error;
+            error = null;
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+        return status == null ? lastSeen : status;
+    }
+
+    /**
+     * @return why the last poll failed if ECX is temporarily unreachable, or null once polling works
+     */
+    public String getPollProblem() {
+        return pollProblem;
+    }
+
+    /**
+     * @return the batched status requests that included this job, each with an even share of its
+     * bytes, as type {@link #POLL_TYPE}. One request serves the watches of several builds.
+     */
+    public Map<String, ECXRequestStats.Summary> summarizePolls() {
+        return polls.summarize();
+    }
+
+    void recordPoll(long millis, long bytes, boolean error) {
+        polls.record(POLL_TYPE, millis, bytes, error);
+    }
+
+    void update(String newStatus) {
+        pollProblem = null;
+        boolean changed;
+        synchronized (this) {
+            changed = newStatus != null && !newStatus.equals(status);
+            if (changed) {
+                status = newStatus;
+                notifyAll();
+            }
+        }
+        if (changed && listener != null) {
+            listener.onStatus(this, newStatus);
+        }
+    }
+
+    /**
+     * Records a transient poll failure. The last known status stays and polling goes on.
+     */
+    void degrade(Exception e) {
+        pollProblem = e.getMessage();
+    }
+
+    void fail(Exception e) {
+        synchronized (this) {
+            error = e;
+            notifyAll();
+        }
+        if (listener != null) {
+            listener.onError(this, e);
+        }
+    }
+
+    synchronized long getNextPoll() {
+        return nextPoll;
+    }
+
+    /**
+     * @param minDelay lower bound for the delay, unless the watch was woken up recently
+     */
+    synchronized void scheduleNextPoll(long now, long minDelay) {
+        long delay = schedule.nextDelay(attempt++);
+        if (now - wokenAt > ECXStatusPoller.WAKE_BURST) {
+            delay = Math.max(delay, minDelay);
+        }
+        nextPoll = now + delay;
+    }
+
+    /**
+     * Polls right away and then on the fast start of the schedule again.
+     */
+    synchronized void wake(long now) {
+        wokenAt = now;
+        attempt = 0;
+        nextPoll = now;
+    }
+}
@@ -0,0 +1,52 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * One entry of an ECX job session log.
+ */
+public final class ECXLogEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final long logTime;
+    private final String type;
+    private final String message;
+
+    public ECXLogEntry(String id, long logTime, String type, String message) {
+        this.id = id;
+        this.logTime = logTime;
+        this.type = type;
+        this.message = message;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the ECX time stamp of the entry, in milliseconds since the epoch
+     */
+    public long getLogTime() {
+        return logTime;
+    }
+
+    /**
+     * @return the severity, e.g. INFO, WARN or ERROR
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(logTime)) + " " + type + " " + message;
+    }
+}
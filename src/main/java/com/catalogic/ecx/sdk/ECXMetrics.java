@@ -0,0 +1,31 @@
+package com.catalogic.ecx.sdk;
+
+/**
+ * Controller wide ECX metrics: REST requests by request type and job run times by final status.
+ */
+public final class ECXMetrics {
+
+    private static final ECXRequestStats requests = new ECXRequestStats();
+    private static final ECXRequestStats jobs = new ECXRequestStats();
+
+    private ECXMetrics() {
+    }
+
+    /**
+     * Latency, byte and error counts of every REST request made through {@link ECXSdk}.
+     */
+    public static ECXRequestStats getRequests() {
+        return requests;
+    }
+
+    /**
+     * Time from launching an ECX job to seeing it reach a terminal status.
+     */
+    public static ECXRequestStats getJobs() {
+        return jobs;
+    }
+
+    public static void recordJob(String status, long millis) {
+        jobs.record(status, millis, 0, ECXJobState.FAILED.equals(status));
+    }
+}
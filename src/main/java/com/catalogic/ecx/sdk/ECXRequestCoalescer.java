@@ -0,0 +1,166 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Single flight for identical ECX GET requests.
+ * <p>
+ * While a request for a key is in flight, other callers asking for the same key wait for it and
+ * share its parsed result, so N waiters cost one request. If a TTL is set, a finished result of a
+ * reusable request is also handed out for that long; requests whose answer decides what a build
+ * does next, such as a job's state, are never answered from a finished result. Failures are
+ * shared with the callers already waiting but never cached. A request that ended because its
+ * caller was interrupted, e.g. an aborted build, is not shared: the waiting callers ask again.
+ */
+public final class ECXRequestCoalescer {
+
+    public final static int DEFAULT_TTL = 0;
+
+    /**
+     * Above this many remembered results, expired ones are swept out on the next request.
+     */
+    private final static int SWEEP_SIZE = 1000;
+
+    private static final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private static volatile long ttl = DEFAULT_TTL;
+
+    private ECXRequestCoalescer() {
+    }
+
+    /**
+     * @param millis how long a finished result is reused, 0 to only share requests in flight
+     */
+    public static void setTtl(int millis) {
+        ttl = millis >= 0 ? millis : DEFAULT_TTL;
+    }
+
+    public static void shutdown() {
+        flights.clear();
+    }
+
+    /**
+     * @param reusable whether a finished result may answer later callers within the TTL, or only
+     *                 callers that asked while the request was in flight
+     * @return the result of the request in flight or cached for {@code key}, or else of {@code loader}
+     */
+    static Object get(String key, boolean reusable, Callable<Object> loader) {
+        for (; ; ) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.isUsable()) {
+                flight.join();
+                if (!flight.interrupted) {
+                    return flight.await();
+                }
+                // the caller running the request was cancelled, which says nothing about ECX
+                flights.remove(key, flight);
+                continue;
+            }
+
+            Flight mine = new Flight(loader);
+            boolean won = flight == null ? flights.putIfAbsent(key, mine) == null : flights.replace(key, flight, mine);
+            if (!won) {
+                continue;
+            }
+
+            if (flights.size() > SWEEP_SIZE) {
+                sweep();
+            }
+            mine.run();
+            if (mine.failed || !reusable || ttl == 0) {
+                flights.remove(key, mine);
+            }
+            return mine.await();
+        }
+    }
+
+    private static void sweep() {
+        for (Iterator<Map.Entry<String, Flight>> it = flights.entrySet().iterator(); it.hasNext(); ) {
+            if (!it.next().getValue().isUsable()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Flight extends FutureTask<Object> {
+
+        private volatile long completedAt;
+        private volatile boolean failed;
+        private volatile boolean interrupted;
+
+        private Flight(Callable<Object> loader) {
+            super(loader);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failed = true;
+            // set before waiters wake up; runs on the thread of the caller running the request
+            interrupted = Thread.currentThread().isInterrupted() || isInterruption(t);
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            completedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return true while in flight, or while the result is fresh
+         */
+        private boolean isUsable() {
+            return !isDone() || (!failed && System.currentTimeMillis() - completedAt < ttl);
+        }
+
+        /**
+         * Waits for the request to end, without throwing its failure.
+         */
+        private void join() {
+            try {
+                get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                // thrown by await() unless the request was interrupted
+            }
+        }
+
+        private Object await() {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    private static boolean isInterruption(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectTimeoutException) {
+                // timeouts are interrupted IO too, but ECX did not answer
+                return false;
+            }
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,185 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free request counters and latency histograms, grouped by a type such as the ECX request
+ * type (SESSIONID, JOBS, JOB, JOBMONITOR, JOBRESULT).
+ * <p>
+ * Latencies go into fixed, roughly logarithmic millisecond buckets, so recording is a few atomic
+ * increments and percentiles are accurate to the bucket bound.
+ */
+public class ECXRequestStats {
+
+    /**
+     * Upper bounds in milliseconds of the histogram buckets. A last, unbounded bucket follows.
+     */
+    public final static long[] BUCKETS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000, 1800000, 7200000};
+
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public void record(String type, long millis, long bytes, boolean error) {
+        Counters c = counters.get(type);
+        if (c == null) {
+            counters.putIfAbsent(type, new Counters());
+            c = counters.get(type);
+        }
+        c.record(millis, bytes, error);
+    }
+
+    /**
+     * @return a consistent enough copy of the counters, sorted by type
+     */
+    public Map<String, Summary> summarize() {
+        Map<String, Summary> summaries = new TreeMap<>();
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            summaries.put(entry.getKey(), entry.getValue().summarize());
+        }
+        return summaries;
+    }
+
+    /**
+     * Adds counters taken elsewhere, e.g. in another JVM.
+     */
+    public void add(Map<String, Summary> summaries) {
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            Counters c = counters.get(entry.getKey());
+            if (c == null) {
+                counters.putIfAbsent(entry.getKey(), new Counters());
+                c = counters.get(entry.getKey());
+            }
+            c.add(entry.getValue());
+        }
+    }
+
+    private static int bucket(long millis) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (millis <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+
+    private static final class Counters {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+        private void record(long millis, long read, boolean error) {
+            count.incrementAndGet();
+            if (error) {
+                errors.incrementAndGet();
+            }
+            bytes.addAndGet(read);
+            totalMillis.addAndGet(millis);
+            histogram.incrementAndGet(bucket(millis));
+
+            long max;
+            while (millis > (max = maxMillis.get()) && !maxMillis.compareAndSet(max, millis)) {
+                // retry
+            }
+        }
+
+        private void add(Summary summary) {
+            count.addAndGet(summary.count);
+            errors.addAndGet(summary.errors);
+            bytes.addAndGet(summary.bytes);
+            totalMillis.addAndGet(summary.totalMillis);
+            for (int i = 0; i < summary.histogram.length && i < histogram.length(); i++) {
+                histogram.addAndGet(i, summary.histogram[i]);
+            }
+
+            long max;
+            while (summary.maxMillis > (max = maxMillis.get()) && !maxMillis.compareAndSet(max, summary.maxMillis)) {
+                // retry
+            }
+        }
+
+        private Summary summarize() {
+            long[] buckets = new long[histogram.length()];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            return new Summary(count.get(), errors.get(), bytes.get(), totalMillis.get(), maxMillis.get(), buckets);
+        }
+    }
+
+    public static final class Summary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long count;
+        private final long errors;
+        private final long bytes;
+        private final long totalMillis;
+        private final long maxMillis;
+        private final long[] histogram;
+
+        public Summary(long count, long errors, long bytes, long totalMillis, long maxMillis, long[] histogram) {
+            this.count = count;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+            this.histogram = histogram;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getMeanMillis() {
+            return count == 0 ? 0 : totalMillis / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the bucket holding the percentile, or the max for the last bucket
+         */
+        public long getPercentileMillis(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return i < BUCKETS.length ? Math.min(BUCKETS[i], maxMillis) : maxMillis;
+                }
+            }
+            return maxMillis;
+        }
+
+        /**
+         * @return this summary with another one added to it
+         */
+        public Summary plus(Summary other) {
+            long[] buckets = new long[Math.max(histogram.length, other.histogram.length)];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = (i < histogram.length ? histogram[i] : 0) + (i < other.histogram.length ? other.histogram[i] : 0);
+            }
+            return new Summary(count + other.count, errors + other.errors, bytes + other.bytes,
+                    totalMillis + other.totalMillis, Math.max(maxMillis, other.maxMillis), buckets);
+        }
+    }
+}
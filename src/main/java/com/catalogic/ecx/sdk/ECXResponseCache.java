@@ -0,0 +1,121 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Validators and parsed results of earlier ECX GET responses, so a repeated GET can be sent as a
+ * conditional request and a {@code 304 Not Modified} answered from the result parsed last time.
+ * <p>
+ * Only responses carrying an {@code ETag} or {@code Last-Modified} header are kept, keyed by
+ * login and request. A result is weighed by the size of the body it was parsed from: bodies over
+ * {@link #MAX_ENTRY_BYTES} are not kept, and the least recently used entries are dropped beyond
+ * {@link #MAX_ENTRIES} or {@link #MAX_BYTES} in total. Results must be immutable since every caller
+ * gets the same instance.
+ */
+public final class ECXResponseCache {
+
+    final static int MAX_ENTRIES = 1000;
+
+    final static long MAX_BYTES = 16 * 1024 * 1024L;
+
+    final static long MAX_ENTRY_BYTES = 1024 * 1024L;
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static long bytes;
+
+    private ECXResponseCache() {
+    }
+
+    static Entry get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Remembers the response's validators with its parsed result, or forgets the key if it has none
+     * or the body was too large.
+     *
+     * @param size the decoded size of the body the result was parsed from, in bytes
+     */
+    static void put(String key, HttpResponse response, Object result, long size) {
+        String etag = header(response, HttpHeaders.ETAG);
+        String lastModified = header(response, HttpHeaders.LAST_MODIFIED);
+        synchronized (entries) {
+            Entry old;
+            if ((etag == null && lastModified == null) || size > MAX_ENTRY_BYTES) {
+                old = entries.remove(key);
+            } else {
+                old = entries.put(key, new Entry(etag, lastModified, result, size));
+                bytes += size;
+            }
+            if (old != null) {
+                bytes -= old.size;
+            }
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (eldest.hasNext() && (entries.size() > MAX_ENTRIES || bytes > MAX_BYTES)) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the total size of the bodies the cached results were parsed from
+     */
+    static long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public static void shutdown() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private static String header(HttpResponse response, String name) {
+        return response.getFirstHeader(name) == null ? null : response.getFirstHeader(name).getValue();
+    }
+
+    static final class Entry {
+
+        private final String etag;
+        private final String lastModified;
+        private final Object result;
+        private final long size;
+
+        private Entry(String etag, String lastModified, Object result, long size) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.result = result;
+            this.size = size;
+        }
+
+        /**
+         * Makes the request conditional on the cached response still being current.
+         */
+        void addConditions(HttpRequestBase request) {
+            if (etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            }
+            if (lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+
+        Object getResult() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * Thrown when ECX answers a REST request with an unexpected HTTP status code.
+ */
+public class ECXResponseException extends RuntimeException {
+
+    private final int statusCode;
+
+    public ECXResponseException(int statusCode) {
+        super("Failed : HTTP error code : " + statusCode);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if ECX rejected the session, i.e. it expired or was logged out.
+     */
+    public boolean isUnauthorized() {
+        return statusCode == HttpStatus.SC_UNAUTHORIZED || statusCode == HttpStatus.SC_FORBIDDEN;
+    }
+}
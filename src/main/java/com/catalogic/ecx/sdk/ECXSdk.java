@@ -3,34 +3,36 @@ package com.catalogic.ecx.sdk;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.JSONValue;
 import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.conn.ssl.SSLContextBuilder;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.net.URLEncoder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 
 public class ECXSdk {
@@ -43,8 +45,18 @@ public class ECXSdk {
     private String url;
     private boolean production;
     private String sessionid;
-    private LinkedHashMap<String, String> jobList;
+    private Map<String, String> jobList;
+    private Map<String, String> jobStatuses;
+    private ECXJobSession latestJobSession;
+    private String jobState;
+    private ECXJobStatus jobInfo;
+    private List<ECXLogEntry> jobLogs;
+    private ECXRequestStats requestStats;
     private LinkedHashSet<String> jobMessages = new LinkedHashSet<>();
+    private String lastStatus;
+    private HttpResponse lastResponse;
+    private long lastResponseSize;
+    private boolean notModified;
 
 
     private final static String ACCEPTHEADER = "application/json";
@@ -58,9 +70,13 @@ public class ECXSdk {
         this.production = production;
     }
 
+    public ECXSdk(ECXEndpoint endpoint) {
+        this(endpoint.getUser(), endpoint.getPassword(), endpoint.getUrl(), endpoint.isProduction());
+    }
+
     public void connect() {
 
-        setSessionId();
+        this.sessionid = ECXSessionCache.getSession(getSessionKey(), pwd, authenticator());
     }
 
     private void setSessionId() {
@@ -68,6 +84,20 @@ public class ECXSdk {
         doPostForSessionId("/endeavour/session", "SESSIONID");
     }
 
+    private ECXSessionCache.Authenticator authenticator() {
+        return new ECXSessionCache.Authenticator() {
+            @Override
+            public String authenticate() {
+                setSessionId();
+                return sessionid;
+            }
+        };
+    }
+
+    private String getSessionKey() {
+        return url + "|" + user;
+    }
+
     public void setJobList()  {
     String q ="[{\"property\":\"name\",\"direction\":\"ASC\"}]";
 
@@ -78,6 +108,73 @@ public class ECXSdk {
   }
     }
 
+    /**
+     * Fetches the status of several jobs with one filtered request.
+     *
+     * @return job id to status, without entries for jobs ECX did not return
+     */
+    public Map<String, String> getJobStatuses(Collection<String> jobIds) {
+        StringBuilder ids = new StringBuilder();
+        for (String jobId : jobIds) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append('"').append(JSONValue.escape(jobId)).append('"');
+        }
+        String filter = "[{\"property\":\"id\",\"value\":[" + ids + "],\"op\":\"IN\"}]";
+
+        try {
+            doGet("/endeavour/job?filter=" + URLEncoder.encode(filter, "UTF-8"), "JOBSTATUS");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return jobStatuses;
+    }
+
+    /**
+     * @return the id of the most recently started session of the job, or null if it never ran
+     */
+    public String getLatestJobSessionId(String jobId) {
+        ECXJobSession session = getLatestJobSession(jobId);
+        return session == null ? null : session.getId();
+    }
+
+    /**
+     * @return the most recently started session of the job, or null if it never ran
+     */
+    public ECXJobSession getLatestJobSession(String jobId) {
+        String filter = "[{\"property\":\"jobId\",\"value\":\"" + JSONValue.escape(jobId) + "\",\"op\":\"=\"}]";
+        String sort = "[{\"property\":\"start\",\"direction\":\"DESC\"}]";
+
+        latestJobSession = null;
+        try {
+            doGet("/endeavour/jobsession?filter=" + URLEncoder.encode(filter, "UTF-8")
+                    + "&sort=" + URLEncoder.encode(sort, "UTF-8") + "&pageSize=1", "JOBSESSION");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return latestJobSession;
+    }
+
+    /**
+     * Fetches one page of a job session log, oldest first, starting at {@code fromLogTime}.
+     * Entries logged exactly at {@code fromLogTime} are included so none are lost when several
+     * share a time stamp.
+     */
+    public List<ECXLogEntry> getJobLogs(String jobSessionId, long fromLogTime, int pageSize) {
+        String filter = "[{\"property\":\"jobsessionId\",\"value\":\"" + JSONValue.escape(jobSessionId) + "\",\"op\":\"=\"},"
+                + "{\"property\":\"logTime\",\"value\":\"" + fromLogTime + "\",\"op\":\">=\"}]";
+        String sort = "[{\"property\":\"logTime\",\"direction\":\"ASC\"}]";
+
+        try {
+            doGet("/endeavour/log/job?filter=" + URLEncoder.encode(filter, "UTF-8")
+                    + "&sort=" + URLEncoder.encode(sort, "UTF-8") + "&pageSize=" + pageSize, "JOBLOG");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return jobLogs;
+    }
+
     public void runJob(String jobId) {
         jobMessages.clear();
 
@@ -87,6 +184,69 @@ public class ECXSdk {
 
     }
 
+    /**
+     * Asks ECX whether the job is running, without adding to the status messages.
+     *
+     * @return the job's current status, e.g. {@link ECXJobState#ACTIVE} or {@link ECXJobState#IDLE}
+     */
+    public String getJobState(String jobId) {
+
+        doGet("/endeavour/job/" + jobId, "JOBSTATE");
+        return jobState;
+
+    }
+
+    /**
+     * Fetches the current status and the outcome of the last run of the job with one request.
+     */
+    public ECXJobStatus getJobInfo(String jobId) {
+
+        doGet("/endeavour/job/" + jobId, "JOBINFO");
+        return jobInfo;
+
+    }
+
+    /**
+     * Checks the session with a cheap authenticated request, renewing it if ECX dropped it. The
+     * request is sent right away, bypassing the {@link ECXEndpointGuard} and the
+     * {@link ECXRequestCoalescer}, so it measures the round trip alone.
+     *
+     * @return the round trip time in milliseconds
+     */
+    public long ping() {
+
+        HttpGet httpGet = new HttpGet(url + "/endeavour/session");
+        httpGet.addHeader(HttpHeaders.ACCEPT, ACCEPTHEADER);
+        httpGet.addHeader(HttpHeaders.CONTENT_TYPE, CONTENTTYPE);
+
+        String session = getSessionId();
+        httpGet.setHeader(ECXAUTHORIZATION_HEADER, session);
+        try {
+            return timeDirectRequest(httpGet);
+        } catch (ECXResponseException e) {
+            if (!e.isUnauthorized()) {
+                throw e;
+            }
+            this.sessionid = ECXSessionCache.renewSession(getSessionKey(), pwd, session, authenticator());
+
+            httpGet.reset();
+            httpGet.setHeader(ECXAUTHORIZATION_HEADER, getSessionId());
+            return timeDirectRequest(httpGet);
+        }
+    }
+
+    private long timeDirectRequest(HttpRequestBase request) {
+        long start = System.nanoTime();
+        try {
+            _processRESTRequest(request, "PING");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
     public void monitorJob(String jobId) {
 
         doGet("/endeavour/job/" + jobId, "JOBMONITOR");
@@ -104,9 +264,8 @@ public class ECXSdk {
         HttpPost httpPost = new HttpPost(url + endpoint);
         httpPost.addHeader(HttpHeaders.ACCEPT, ACCEPTHEADER);
         httpPost.addHeader(HttpHeaders.CONTENT_TYPE, CONTENTTYPE);
-        httpPost.addHeader(ECXAUTHORIZATION_HEADER, getSessionId());
 
-        processRESTRequest(httpPost, jsonPropertyOfInterest);
+        processAuthenticatedRequest(httpPost, jsonPropertyOfInterest);
 
     }
 
@@ -125,68 +284,228 @@ public class ECXSdk {
 
     }
 
-    private void doGet(String endpoint, String property) {
+    /**
+     * GETs are coalesced, see {@link ECXRequestCoalescer}: identical concurrent requests of the same
+     * user share one response, whose result is then applied to every caller. Job state and job
+     * session answers are only shared while in flight, never reused afterwards.
+     * <p>
+     * A GET answered before with an ETag or Last-Modified header is sent as a conditional request,
+     * and on {@code 304 Not Modified} the result parsed from that earlier answer is used again, see
+     * {@link ECXResponseCache}. Job log and job state answers change from one poll to the next and
+     * are not kept.
+     */
+    private void doGet(final String endpoint, final String property) {
+
+        final String key = getSessionKey() + "|" + property + "|" + endpoint;
+        boolean reusable = !"JOBSTATE".equals(property) && !"JOBSESSION".equals(property);
+        final boolean cacheable = !"JOBSTATE".equals(property) && !"JOBLOG".equals(property);
+        Object result = ECXRequestCoalescer.get(key, reusable, new Callable<Object>() {
+            @Override
+            public Object call() {
+                HttpGet httpGet = new HttpGet(url + endpoint);
+                httpGet.addHeader(HttpHeaders.ACCEPT, ACCEPTHEADER);
+                httpGet.addHeader(HttpHeaders.CONTENT_TYPE, CONTENTTYPE);
+
+                ECXResponseCache.Entry cached = cacheable ? ECXResponseCache.get(key) : null;
+                if (cached != null) {
+                    cached.addConditions(httpGet);
+                }
+
+                processAuthenticatedRequest(httpGet, property);
+                if (notModified) {
+                    return cached.getResult();
+                }
+                Object parsed = getResult(property);
+                if (cacheable) {
+                    ECXResponseCache.put(key, lastResponse, parsed, lastResponseSize);
+                }
+                return parsed;
+            }
+        });
+        applyResult(property, result);
+
+    }
 
-        HttpGet httpGet = new HttpGet(url + endpoint);
-        httpGet.addHeader(HttpHeaders.ACCEPT, ACCEPTHEADER);
-        httpGet.addHeader(HttpHeaders.CONTENT_TYPE, CONTENTTYPE);
-        httpGet.addHeader(ECXAUTHORIZATION_HEADER, getSessionId());
+    /**
+     * @return what parsing the last response for the property produced
+     */
+    private Object getResult(String jsonPropertyOfInterest) {
+        switch (jsonPropertyOfInterest) {
+            case "JOBS":
+                return jobList;
+            case "JOBSTATUS":
+                return jobStatuses;
+            case "JOBSESSION":
+                return latestJobSession;
+            case "JOBSTATE":
+                return jobState;
+            case "JOBINFO":
+                return jobInfo;
+            case "JOBLOG":
+                return jobLogs;
+            default:
+                return lastStatus;
+        }
+    }
+
+    /**
+     * Sets a result shared by another caller as if this instance had parsed the response itself.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyResult(String jsonPropertyOfInterest, Object result) {
+        switch (jsonPropertyOfInterest) {
+            case "JOBS":
+                jobList = (Map<String, String>) result;
+                break;
+            case "JOBSTATUS":
+                jobStatuses = (Map<String, String>) result;
+                break;
+            case "JOBSESSION":
+                latestJobSession = (ECXJobSession) result;
+                break;
+            case "JOBSTATE":
+                jobState = (String) result;
+                break;
+            case "JOBINFO":
+                jobInfo = (ECXJobStatus) result;
+                break;
+            case "JOBLOG":
+                jobLogs = (List<ECXLogEntry>) result;
+                break;
+            default:
+                setStatus((String) result);
+        }
+    }
 
-        processRESTRequest(httpGet, property);
+    /**
+     * Sends a request carrying the cached session id. If ECX rejects the session it is renewed once
+     * and the request retried.
+     */
+    private void processAuthenticatedRequest(HttpRequestBase request, String jsonPropertyOfInterest) {
+        String session = getSessionId();
+        request.setHeader(ECXAUTHORIZATION_HEADER, session);
 
+        try {
+            processRESTRequest(request, jsonPropertyOfInterest);
+        } catch (ECXResponseException e) {
+            if (!e.isUnauthorized()) {
+                throw e;
+            }
+            this.sessionid = ECXSessionCache.renewSession(getSessionKey(), pwd, session, authenticator());
+
+            request.reset();
+            request.setHeader(ECXAUTHORIZATION_HEADER, getSessionId());
+            processRESTRequest(request, jsonPropertyOfInterest);
+        }
     }
      
-    private void processRESTRequest(HttpUriRequest request, String jsonPropertyOfInterest) {
-        try {
-            _processRESTRequest(request, jsonPropertyOfInterest);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    /**
+     * Sends a request through the {@link ECXEndpointGuard} of the endpoint. Requests that can be
+     * repeated safely, i.e. all but launching a job, are retried with backoff on transient errors.
+     */
+    private void processRESTRequest(HttpRequestBase request, String jsonPropertyOfInterest) {
+        ECXEndpointGuard guard = ECXEndpointGuard.forEndpoint(url);
+        int retries = "JOB".equals(jsonPropertyOfInterest) ? 0 : ECXEndpointGuard.getMaxRetries();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (attempt > 0) {
+                    Thread.sleep(ECXEndpointGuard.retryDelay(attempt));
+                    request.reset();
+                }
+                guard.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            try {
+                _processRESTRequest(request, jsonPropertyOfInterest);
+                guard.onSuccess();
+                return;
+            } catch (Exception e) {
+                boolean transientError = ECXEndpointGuard.isTransient(e);
+                if (transientError) {
+                    guard.onFailure();
+                } else {
+                    // ECX answered, the endpoint itself is fine
+                    guard.onSuccess();
+                }
+                if (!transientError || attempt >= retries) {
+                    if (e instanceof RuntimeException) {
+                        throw (RuntimeException) e;
+                    }
+                    throw new RuntimeException(e);
+                }
+                logger.debug("Retrying " + jsonPropertyOfInterest + " request to " + url + " after " + e);
+            }
         }
     }
 
-    private void _processRESTRequest(HttpUriRequest request, String jsonPropertyOfInterest) throws Exception {
-    	CloseableHttpClient client;
-    	
-    	if(production)
-    	{
-    		client = HttpClients.createDefault();	
-    	}
-    	else {
-       	SSLContextBuilder builder = new SSLContextBuilder();
-    	builder.loadTrustMaterial(null, new TrustSelfSignedStrategy());
-		SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(builder.build(),SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-		client = HttpClients.custom().setSSLSocketFactory(sslsf).build();
-    	}
-		try{
-			
-			 try (CloseableHttpResponse response = client.execute(request)){
-				 
-				 validateStatusLine(response, jsonPropertyOfInterest);
-		         processRESTResponse(response, jsonPropertyOfInterest);
-			 }
-		}
-		finally{
-			client.close();
-		}
+    private void _processRESTRequest(HttpRequestBase request, String jsonPropertyOfInterest) throws Exception {
+        CloseableHttpClient client = ECXHttpClientPool.getClient(url, production);
+        request.setConfig(ECXHttpClientPool.getRequestConfig());
+        HttpClientContext context = HttpClientContext.create();
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        boolean failed = true;
+        notModified = false;
+        lastResponseSize = 0;
+
+        try (CloseableHttpResponse response = client.execute(request, context)) {
+            try {
+                if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED && isConditional(request)) {
+                    notModified = true;
+                } else {
+                    validateStatusLine(response, jsonPropertyOfInterest);
+                    bytes = processRESTResponse(response, jsonPropertyOfInterest);
+                    lastResponseSize = bytes;
+                }
+                lastResponse = response;
+                failed = false;
+            } finally {
+                // fully read the entity so the connection goes back to the pool
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        } finally {
+            long wireBytes = ECXHttpClientPool.getWireBytes(context);
+            if (wireBytes >= 0) {
+                bytes = wireBytes;
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            ECXMetrics.getRequests().record(jsonPropertyOfInterest, millis, bytes, failed);
+            if (requestStats != null) {
+                requestStats.record(jsonPropertyOfInterest, millis, bytes, failed);
+            }
+        }
     }
            
-    private void processRESTResponse(CloseableHttpResponse httpResponse, String jsonPropertyOfInterest) {
+    /**
+     * @return the number of bytes read from the response entity
+     */
+    private long processRESTResponse(CloseableHttpResponse httpResponse, String jsonPropertyOfInterest) {
 
 
         HttpEntity entity = httpResponse.getEntity();
 
         if (entity != null) {
 
-            try (InputStream inputStream = entity.getContent()) {
-
-                String result = convertStreamToString(inputStream);
+            CountingInputStream counter = null;
+            try (Reader reader = new InputStreamReader(counter = new CountingInputStream(entity.getContent()), Charset.forName("UTF-8"))) {
 
-                parseJSONStreamForPropertyOfInterest(jsonPropertyOfInterest, result);
+                parseJSONStreamForPropertyOfInterest(jsonPropertyOfInterest, reader);
 
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+            return counter.getCount();
         }
+        return 0;
+    }
+
+    private static boolean isConditional(HttpRequestBase request) {
+        return request.containsHeader(HttpHeaders.IF_NONE_MATCH) || request.containsHeader(HttpHeaders.IF_MODIFIED_SINCE);
     }
 
     private void validateStatusLine(CloseableHttpResponse response, String jsonPropertyOfInterest) {
@@ -197,71 +516,101 @@ public class ECXSdk {
             case "JOBRESULT":
             case "SESSIONID":
             case "JOBS":
+            case "JOBSTATUS":
             case "JOB":
             case "JOBMONITOR":
+            case "JOBSESSION":
+            case "JOBLOG":
+            case "JOBSTATE":
+            case "JOBINFO":
+            case "PING":
                 expectedResponse = HttpStatus.SC_OK;
                 break;
             default:
         }
 
         if (response.getStatusLine().getStatusCode() != expectedResponse) {
-            throw new RuntimeException("Failed : HTTP error code : "
-                    + response.getStatusLine().getStatusCode());
+            throw new ECXResponseException(response.getStatusLine().getStatusCode());
         }
     }
 
-    private String convertStreamToString(InputStream is) {
-
-
-        StringBuilder sb = new StringBuilder();
-        String line = null;
-
-         try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")))) {
-            while ((line = reader.readLine()) != null) {
-                sb.append(line + "\n");
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        return sb.toString();
-    }
-
-    private void parseJSONStreamForPropertyOfInterest(String jsonPropertyOfInterest, String jsonRestResponse) {
-
-        JSONParser parser = new JSONParser();
-        JSONObject data;
+    /**
+     * Extracts the property of interest straight from the response stream, see {@link JSONStreamExtractor}.
+     */
+    private void parseJSONStreamForPropertyOfInterest(String jsonPropertyOfInterest, Reader jsonRestResponse) throws IOException {
 
         try {
-            data = (JSONObject) parser.parse(jsonRestResponse);
-
             switch (jsonPropertyOfInterest) {
                 case "SESSIONID":
-                    this.sessionid = (String) data.get("sessionid");
+                    this.sessionid = JSONStreamExtractor.forProperties("sessionid").parse(jsonRestResponse).getString("sessionid");
                     break;
                 case "JOBS": {
-                    jobList = new LinkedHashMap<>();
-                    JSONArray jobArray = (JSONArray) data.get("jobs");
-
-                    for (Object object : jobArray) {
-
-                        JSONObject aJson = (JSONObject) object;
-                        String jobName = (String) aJson.get("name");
-                        String jobId = (String) aJson.get("id");
-
-                        jobList.put(jobId, jobName.toLowerCase() + " [" + jobId + "] ");
-                    }
+                    final LinkedHashMap<String, String> jobs = new LinkedHashMap<>();
+                    JSONStreamExtractor.forArray("jobs", new JSONStreamExtractor.ElementHandler() {
+                        @Override
+                        public void onElement(Map<String, Object> aJson) {
+                            String jobName = (String) aJson.get("name");
+                            String jobId = (String) aJson.get("id");
+
+                            jobs.put(jobId, jobName.toLowerCase() + " [" + jobId + "] ");
+                        }
+                    }, "id", "name").parse(jsonRestResponse);
+                    jobList = Collections.unmodifiableMap(jobs);
+                    break;
+                }
+                case "JOBSTATUS": {
+                    final Map<String, String> statuses = new HashMap<>();
+                    JSONStreamExtractor.forArray("jobs", new JSONStreamExtractor.ElementHandler() {
+                        @Override
+                        public void onElement(Map<String, Object> aJson) {
+                            statuses.put((String) aJson.get("id"), (String) aJson.get("status"));
+                        }
+                    }, "id", "status").parse(jsonRestResponse);
+                    jobStatuses = Collections.unmodifiableMap(statuses);
+                    break;
+                }
+                case "JOBSESSION": {
+                    JSONStreamExtractor.forArray("sessions", new JSONStreamExtractor.ElementHandler() {
+                        @Override
+                        public void onElement(Map<String, Object> aJson) {
+                            if (latestJobSession == null && aJson.get("id") != null) {
+                                Object start = aJson.get("start");
+                                latestJobSession = new ECXJobSession(String.valueOf(aJson.get("id")),
+                                        start == null ? 0 : Long.parseLong(String.valueOf(start)));
+                            }
+                        }
+                    }, "id", "start").parse(jsonRestResponse);
+                    break;
+                }
+                case "JOBLOG": {
+                    final List<ECXLogEntry> logs = new ArrayList<>();
+                    JSONStreamExtractor.forArray("logs", new JSONStreamExtractor.ElementHandler() {
+                        @Override
+                        public void onElement(Map<String, Object> aJson) {
+                            Object logTime = aJson.get("logTime");
+                            logs.add(new ECXLogEntry(String.valueOf(aJson.get("id")),
+                                    logTime == null ? 0 : Long.parseLong(String.valueOf(logTime)),
+                                    (String) aJson.get("type"), (String) aJson.get("message")));
+                        }
+                    }, "id", "logTime", "type", "message").parse(jsonRestResponse);
+                    jobLogs = Collections.unmodifiableList(logs);
                     break;
                 }
-                case "JOB": {
-                    setStatus((String) data.get("status"));
+                case "JOBSTATE":
+                    jobState = JSONStreamExtractor.forProperties("status").parse(jsonRestResponse).getString("status");
+                    break;
+                case "JOBINFO": {
+                    JSONStreamExtractor info = JSONStreamExtractor.forProperties("id", "status", "lastSessionStatus").parse(jsonRestResponse);
+                    jobInfo = new ECXJobStatus(info.getString("id"), info.getString("status"), info.getString("lastSessionStatus"));
                     break;
                 }
+                case "JOB":
                 case "JOBMONITOR": {
-                    setStatus((String) data.get("status"));
+                    setStatus(JSONStreamExtractor.forProperties("status").parse(jsonRestResponse).getString("status"));
                     break;
                 }
                 case "JOBRESULT": {
-                    setStatus((String) data.get("lastSessionStatus"));
+                    setStatus(JSONStreamExtractor.forProperties("lastSessionStatus").parse(jsonRestResponse).getString("lastSessionStatus"));
                     break;
                 }
 
@@ -275,14 +624,29 @@ public class ECXSdk {
 
     private void setStatus(String status) {
 
+        this.lastStatus = status;
         this.jobMessages.add(status);
 
     }
 
+    /**
+     * @return the status from the latest launch, monitor or result request, or null before the first
+     */
+    public String getLastStatus() {
+        return lastStatus;
+    }
+
     public Iterator<String> getStatus() {
         return jobMessages.iterator();
     }
 
+    /**
+     * Also records the requests made by this instance in {@code requestStats}, e.g. to report them per build.
+     */
+    public void setRequestStats(ECXRequestStats requestStats) {
+        this.requestStats = requestStats;
+    }
+
     private String getSessionId() {
         return sessionid;
     }
@@ -0,0 +1,140 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Controller wide cache of ECX session ids keyed by (url, user).
+ * <p>
+ * Logins are single-flight: callers racing for the same key wait on a per-key lock, and only the
+ * first one talks to ECX. A cached session is only handed out to callers presenting the same
+ * password it was created with. A lock is dropped once nobody waits on it and its key has no
+ * session, e.g. after a failed login.
+ */
+final class ECXSessionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXSessionCache.class);
+
+    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private static final Map<String, Lock> locks = new HashMap<>();
+
+    interface Authenticator {
+
+        /**
+         * Logs into ECX and returns the new session id.
+         */
+        String authenticate();
+    }
+
+    private ECXSessionCache() {
+    }
+
+    static String getSession(String key, String password, Authenticator authenticator) {
+        String fingerprint = fingerprint(password);
+
+        Session session = sessions.get(key);
+        if (session != null && session.fingerprint.equals(fingerprint)) {
+            return session.id;
+        }
+
+        Lock lock = lock(key);
+        try {
+            synchronized (lock) {
+                session = sessions.get(key);
+                if (session != null && session.fingerprint.equals(fingerprint)) {
+                    return session.id;
+                }
+                return login(key, fingerprint, authenticator);
+            }
+        } finally {
+            release(key, lock);
+        }
+    }
+
+    /**
+     * Replaces a session ECX rejected. If another caller already renewed it, that session is reused.
+     */
+    static String renewSession(String key, String password, String staleSessionId, Authenticator authenticator) {
+        String fingerprint = fingerprint(password);
+
+        Lock lock = lock(key);
+        try {
+            synchronized (lock) {
+                Session session = sessions.get(key);
+                if (session != null && session.fingerprint.equals(fingerprint) && !session.id.equals(staleSessionId)) {
+                    return session.id;
+                }
+                logger.debug("ECX session for " + key + " was rejected, logging in again");
+                return login(key, fingerprint, authenticator);
+            }
+        } finally {
+            release(key, lock);
+        }
+    }
+
+    /**
+     * @return the number of keys with a lock, i.e. with a cached session or a login in progress
+     */
+    static int getLockCount() {
+        synchronized (locks) {
+            return locks.size();
+        }
+    }
+
+    private static String login(String key, String fingerprint, Authenticator authenticator) {
+        sessions.remove(key);
+        String id = authenticator.authenticate();
+        if (id != null) {
+            sessions.put(key, new Session(id, fingerprint));
+        }
+        return id;
+    }
+
+    private static Lock lock(String key) {
+        synchronized (locks) {
+            Lock lock = locks.get(key);
+            if (lock == null) {
+                lock = new Lock();
+                locks.put(key, lock);
+            }
+            lock.users++;
+            return lock;
+        }
+    }
+
+    private static void release(String key, Lock lock) {
+        synchronized (locks) {
+            if (--lock.users == 0 && !sessions.containsKey(key)) {
+                locks.remove(key);
+            }
+        }
+    }
+
+    private static String fingerprint(String password) {
+        return DigestUtils.sha256Hex(password == null ? "" : password);
+    }
+
+    private static final class Lock {
+
+        /**
+         * The callers holding or waiting for the lock, guarded by {@code locks}.
+         */
+        private int users;
+    }
+
+    private static final class Session {
+
+        private final String id;
+        private final String fingerprint;
+
+        private Session(String id, String fingerprint) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controller wide service polling the status of every in-flight ECX job.
+ * <p>
+ * Jobs are grouped per ECX endpoint. Each round collects the jobs whose poll schedule is due and
+ * asks ECX for all of their statuses with a single filtered {@code /endeavour/job} request, so the
+ * request rate follows the number of ECX servers rather than the number of waiting builds. Each
+ * watch counts the requests it was part of, see {@link ECXJobWatch#summarizePolls()}.
+ * Transient failures (see {@link ECXEndpointGuard#isTransient(Throwable)}) do not end a watch: it
+ * keeps its last known status and is polled again on its schedule.
+ * <p>
+ * ECX, or a relay script next to it, may also report that a job session ended, see
+ * {@link #wake(ECXJobWatch)}. Such a callback only makes the poller ask ECX right away, the status
+ * always comes from ECX. While callbacks from an endpoint keep arriving, its watches are polled at
+ * the slow safety net interval only.
+ */
+public final class ECXStatusPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ECXStatusPoller.class);
+
+    /**
+     * Jobs due within this window are folded into the current round.
+     */
+    private final static long BATCH_WINDOW = 250;
+
+    /**
+     * After a wake up, polls follow the watch's own schedule for this long, ignoring the safety net interval.
+     */
+    final static long WAKE_BURST = 30000;
+
+    /**
+     * Callbacks count as healthy for an endpoint if one arrived within this window.
+     */
+    private final static long CALLBACK_HEALTH_WINDOW = 60 * 60 * 1000L;
+
+    public final static int DEFAULT_SAFETY_NET_INTERVAL = 60;
+
+    private static final Map<String, EndpointPoller> endpoints = new ConcurrentHashMap<>();
+
+    private static volatile long safetyNetInterval = DEFAULT_SAFETY_NET_INTERVAL * 1000L;
+
+    private static ScheduledExecutorService executor;
+
+    private ECXStatusPoller() {
+    }
+
+    public static ECXJobWatch watch(String user, String password, String url, boolean production,
+                                    String jobId, PollSchedule schedule, ECXJobWatch.Listener listener) {
+        ECXJobWatch watch = new ECXJobWatch(jobId, schedule, listener);
+        add(user, password, url, production, watch);
+        return watch;
+    }
+
+    public static ECXJobWatch watch(ECXEndpoint endpoint, String jobId, PollSchedule schedule, ECXJobWatch.Listener listener) {
+        return watch(endpoint.getUser(), endpoint.getPassword(), endpoint.getUrl(), endpoint.isProduction(), jobId, schedule, listener);
+    }
+
+    /**
+     * @return the number of jobs being waited on at the ECX server, under any login
+     */
+    public static int getWatchedJobs(String url) {
+        int count = 0;
+        for (EndpointPoller poller : endpoints.values()) {
+            if (poller.url.equals(url)) {
+                count += poller.countWatches();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param seconds the poll interval used while callbacks from an endpoint are healthy
+     */
+    public static void setSafetyNetInterval(int seconds) {
+        safetyNetInterval = (seconds > 0 ? seconds : DEFAULT_SAFETY_NET_INTERVAL) * 1000L;
+    }
+
+    /**
+     * Polls the watched job right away, e.g. because ECX called back that a job session ended, and
+     * marks callbacks as healthy for the watch's endpoint.
+     *
+     * @return false if the watch is done or unknown
+     */
+    public static boolean wake(ECXJobWatch watch) {
+        for (EndpointPoller poller : endpoints.values()) {
+            if (poller.wake(watch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the watch to the poller of the endpoint and login. Each password gets its own poller,
+     * so a build that logs in with a new password leaves the watches of the old one where
+     * {@link #wake} and {@link #getWatchedJobs} find them. Pollers of an old password are dropped
+     * once they have nothing left to poll.
+     */
+    private static void add(String user, String password, String url, boolean production, ECXJobWatch watch) {
+        String login = url + "|" + user + "|" + production + "|";
+        String key = login + DigestUtils.sha256Hex(password == null ? "" : password);
+
+        // adding under the lock keeps a poller from being dropped between the lookup and the add
+        synchronized (endpoints) {
+            EndpointPoller poller = endpoints.get(key);
+            if (poller == null) {
+                for (Iterator<Map.Entry<String, EndpointPoller>> it = endpoints.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, EndpointPoller> entry = it.next();
+                    if (entry.getKey().startsWith(login) && entry.getValue().countWatches() == 0) {
+                        it.remove();
+                    }
+                }
+                poller = new EndpointPoller(user, password, url, production);
+                endpoints.put(key, poller);
+            }
+            poller.add(watch);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newScheduledThreadPool(4, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ECX status poller " + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Stops polling. Called when the plugin is stopped.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        endpoints.clear();
+    }
+
+    private static final class EndpointPoller implements Runnable {
+
+        private final String user;
+        private final String password;
+        private final String url;
+        private final boolean production;
+
+        private final Set<ECXJobWatch> watches = new LinkedHashSet<>();
+        private ScheduledFuture<?> next;
+        private long nextRun = Long.MAX_VALUE;
+        private boolean running;
+        private volatile long lastCallback;
+
+        private EndpointPoller(String user, String password, String url, boolean production) {
+            this.user = user;
+            this.password = password == null ? "" : password;
+            this.url = url;
+            this.production = production;
+        }
+
+        private synchronized void add(ECXJobWatch watch) {
+            watches.add(watch);
+            reschedule();
+        }
+
+        private synchronized int countWatches() {
+            int count = 0;
+            for (ECXJobWatch watch : watches) {
+                if (!watch.isDone()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private synchronized boolean wake(ECXJobWatch watch) {
+            if (watch.isDone() || !watches.contains(watch)) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            lastCallback = now;
+            watch.wake(now);
+            reschedule();
+            return true;
+        }
+
+        private long minDelay(long now) {
+            return now - lastCallback < CALLBACK_HEALTH_WINDOW ? safetyNetInterval : 0;
+        }
+
+        @Override
+        public void run() {
+            List<ECXJobWatch> due = new ArrayList<>();
+            Set<String> jobIds = new LinkedHashSet<>();
+
+            synchronized (this) {
+                running = true;
+                next = null;
+                nextRun = Long.MAX_VALUE;
+
+                long horizon = System.currentTimeMillis() + BATCH_WINDOW;
+                for (ECXJobWatch watch : watches) {
+                    if (!watch.isDone() && watch.getNextPoll() <= horizon) {
+                        due.add(watch);
+                        jobIds.add(watch.getJobId());
+                    }
+                }
+            }
+
+            try {
+                if (!due.isEmpty()) {
+                    poll(due, jobIds);
+                }
+            } finally {
+                synchronized (this) {
+                    running = false;
+                    reschedule();
+                }
+            }
+        }
+
+        private void poll(List<ECXJobWatch> due, Set<String> jobIds) {
+            long start = System.currentTimeMillis();
+            ECXRequestStats round = new ECXRequestStats();
+            try {
+                ECXSdk ecx = new ECXSdk(user, password, url, production);
+                ecx.setRequestStats(round);
+                ecx.connect();
+                Map<String, String> statuses = ecx.getJobStatuses(jobIds);
+
+                long now = System.currentTimeMillis();
+                long bytes = bytesPerWatch(round, due.size());
+                for (ECXJobWatch watch : due) {
+                    watch.recordPoll(now - start, bytes, false);
+                    watch.scheduleNextPoll(now, minDelay(now));
+                    watch.update(statuses.get(watch.getJobId()));
+                }
+            } catch (Exception e) {
+                boolean transientError = ECXEndpointGuard.isTransient(e);
+                if (transientError) {
+                    logger.warn("Failed to poll ECX job status on " + url + ", keeping the last known status: " + e.getMessage());
+                } else {
+                    logger.warn("Failed to poll ECX job status on " + url, e);
+                }
+
+                long now = System.currentTimeMillis();
+                long bytes = bytesPerWatch(round, due.size());
+                for (ECXJobWatch watch : due) {
+                    watch.recordPoll(now - start, bytes, true);
+                    watch.scheduleNextPoll(now, minDelay(now));
+                    if (transientError) {
+                        watch.degrade(e);
+                    } else {
+                        watch.fail(e);
+                    }
+                }
+            }
+        }
+
+        private static long bytesPerWatch(ECXRequestStats round, int watches) {
+            long bytes = 0;
+            for (ECXRequestStats.Summary summary : round.summarize().values()) {
+                bytes += summary.getBytes();
+            }
+            return bytes / watches;
+        }
+
+        /**
+         * Drops finished watches and arms the timer for the earliest due one. Must hold the lock.
+         */
+        private void reschedule() {
+            long earliest = Long.MAX_VALUE;
+            for (Iterator<ECXJobWatch> it = watches.iterator(); it.hasNext(); ) {
+                ECXJobWatch watch = it.next();
+                if (watch.isDone()) {
+                    it.remove();
+                } else {
+                    earliest = Math.min(earliest, watch.getNextPoll());
+                }
+            }
+
+            if (running || earliest == Long.MAX_VALUE || earliest >= nextRun) {
+                return;
+            }
+            if (next != null) {
+                next.cancel(false);
+            }
+            nextRun = earliest;
+            next = executor().schedule(this, Math.max(0, earliest - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+}
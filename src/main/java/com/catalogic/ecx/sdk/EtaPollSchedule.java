@@ -0,0 +1,54 @@
+package com.catalogic.ecx.sdk;
+
+/**
+ * Spends the polls of a job run around the time earlier runs of the job ended.
+ * <p>
+ * Until the {@link ECXJobHistory.Estimate#getP10() p10} duration the delay halves the time left to
+ * it, capped at {@link #MAX_EARLY_DELAY} and at the longest delay of the wrapped schedule so a run
+ * that fails early is still noticed. Between the p10 and p95 durations the job is polled about
+ * {@link #WINDOW_POLLS} times. A run that goes on longer is polled on the wrapped schedule.
+ */
+public class EtaPollSchedule implements PollSchedule {
+
+    private static final long serialVersionUID = 1L;
+
+    final static long MAX_EARLY_DELAY = 5 * 60 * 1000L;
+
+    final static int WINDOW_POLLS = 20;
+
+    private final PollSchedule fallback;
+    private final long launchedAt;
+    private final long windowStart;
+    private final long windowEnd;
+
+    /**
+     * @param fallback   the schedule used once the run takes longer than the p95 duration, and as the lower bound for any delay
+     * @param launchedAt when the run was launched, in milliseconds since the epoch
+     */
+    public EtaPollSchedule(PollSchedule fallback, long launchedAt, ECXJobHistory.Estimate estimate) {
+        this.fallback = fallback;
+        this.launchedAt = launchedAt;
+        this.windowStart = estimate.getP10();
+        this.windowEnd = Math.max(estimate.getP10(), estimate.getP95());
+    }
+
+    @Override
+    public long nextDelay(int attempt) {
+        long delay = fallback.nextDelay(attempt);
+        long elapsed = System.currentTimeMillis() - launchedAt;
+
+        if (elapsed < windowStart) {
+            long cap = Math.min(MAX_EARLY_DELAY, fallback.getMaxDelay());
+            return Math.max(delay, Math.min((windowStart - elapsed) / 2, cap));
+        }
+        if (elapsed < windowEnd) {
+            return Math.min(delay, Math.max(1, (windowEnd - windowStart) / WINDOW_POLLS));
+        }
+        return delay;
+    }
+
+    @Override
+    public long getMaxDelay() {
+        return fallback.getMaxDelay();
+    }
+}
@@ -0,0 +1,145 @@
+package com.catalogic.ecx.sdk;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pulls a handful of properties out of an ECX REST response while it is being read.
+ * <p>
+ * Only top level primitive properties and the primitive properties of the objects in one top
+ * level array (e.g. {@code jobs}) are kept. Everything else is tokenized and dropped, so neither
+ * the response text nor a JSON tree is ever held in memory. Parsing stops as soon as the wanted
+ * top level properties have been seen and no array was asked for.
+ */
+final class JSONStreamExtractor implements ContentHandler {
+
+    interface ElementHandler {
+
+        void onElement(Map<String, Object> element);
+    }
+
+    private final Set<String> properties;
+    private final String arrayProperty;
+    private final Set<String> elementProperties;
+    private final ElementHandler elementHandler;
+
+    private final Map<String, Object> values = new HashMap<>();
+    private final Deque<String> keys = new ArrayDeque<>();
+    private int depth;
+    private boolean inArray;
+    private Map<String, Object> element;
+
+    private JSONStreamExtractor(Set<String> properties, String arrayProperty, Set<String> elementProperties, ElementHandler elementHandler) {
+        this.properties = properties;
+        this.arrayProperty = arrayProperty;
+        this.elementProperties = elementProperties;
+        this.elementHandler = elementHandler;
+    }
+
+    /**
+     * Extracts top level primitive properties.
+     */
+    static JSONStreamExtractor forProperties(String... properties) {
+        return new JSONStreamExtractor(new HashSet<>(Arrays.asList(properties)), null, Collections.<String>emptySet(), null);
+    }
+
+    /**
+     * Hands every object of the top level array {@code arrayProperty} to {@code handler}, reduced
+     * to the given primitive properties.
+     */
+    static JSONStreamExtractor forArray(String arrayProperty, ElementHandler handler, String... elementProperties) {
+        return new JSONStreamExtractor(Collections.<String>emptySet(), arrayProperty, new HashSet<>(Arrays.asList(elementProperties)), handler);
+    }
+
+    JSONStreamExtractor parse(Reader reader) throws IOException, ParseException {
+        new JSONParser().parse(reader, this);
+        return this;
+    }
+
+    String getString(String property) {
+        return (String) values.get(property);
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        if (inArray && depth == 3) {
+            element = new HashMap<>();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        if (element != null && depth == 3) {
+            elementHandler.onElement(element);
+            element = null;
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        keys.push(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        keys.pop();
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        depth++;
+        if (depth == 2 && arrayProperty != null && arrayProperty.equals(keys.peek())) {
+            inArray = true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        if (inArray && depth == 2) {
+            inArray = false;
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        String key = keys.peek();
+
+        if (depth == 1 && properties.contains(key)) {
+            values.put(key, value);
+            return arrayProperty != null || values.size() < properties.size();
+        }
+        if (element != null && depth == 3 && elementProperties.contains(key)) {
+            element.put(key, value);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.catalogic.ecx.sdk;
+
+import java.io.Serializable;
+
+/**
+ * Decides how long to wait between two status polls of a running ECX job.
+ */
+public interface PollSchedule extends Serializable {
+
+    /**
+     * @param attempt the number of polls already made for this job, starting at 0
+     * @return the delay in milliseconds before the next poll
+     */
+    long nextDelay(int attempt);
+
+    /**
+     * @return the longest delay in milliseconds this schedule ever returns
+     */
+    long getMaxDelay();
+}
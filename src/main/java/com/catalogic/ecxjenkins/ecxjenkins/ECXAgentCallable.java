@@ -0,0 +1,133 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXEndpointGuard;
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXHttpClientPool;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.ECXRequestCoalescer;
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the ECX jobs of a build step on the build's agent, so the REST traffic and response parsing
+ * happen there instead of on the controller.
+ * <p>
+ * The agent JVM gets the controller's connection, timeout, rate limit and job limit settings
+ * before the first request. The job limit counts the jobs launched from the agent only. Only what the build console shows travels back while the jobs run: status
+ * changes and log lines through the listener. The outcomes and request counters follow once at
+ * the end.
+ * <p>
+ * The controller may not reach ECX at all when the build runs on an agent, so the reachability
+ * check a build step makes before launching is made here, from the agent.
+ * <p>
+ * The agent logs in itself, so the {@link ECXJobRunner}'s endpoint carries the ECX password to the
+ * agent in plain text. The agent has to be trusted with the ECX credentials.
+ */
+final class ECXAgentCallable extends MasterToSlaveCallable<ECXAgentCallable.Result, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ECXJobRunner runner;
+    private final List<String> jobIds;
+    private final Map<String, ECXJobRunner.Resume> resumes;
+    private final int maxConcurrentJobs;
+    private final boolean checkReachable;
+    private final TaskListener listener;
+
+    private final int maxConnectionsTotal;
+    private final int maxConnectionsPerRoute;
+    private final int idleConnectionTimeout;
+    private final int connectTimeout;
+    private final int socketTimeout;
+    private final int requestRate;
+    private final int requestBurst;
+    private final int maxRetries;
+    private final int circuitFailureThreshold;
+    private final int circuitOpenTime;
+    private final int resultCacheTtl;
+    private final int maxJobsPerAppliance;
+
+    /**
+     * @param checkReachable whether to check that ECX answers before launching; endpoint group members were checked when selected
+     */
+    ECXAgentCallable(ECXJobRunner runner, List<String> jobIds, Map<String, ECXJobRunner.Resume> resumes, int maxConcurrentJobs,
+                     boolean checkReachable, TaskListener listener, ECXCDMBuilder.DescriptorImpl global) {
+        this.runner = runner;
+        this.jobIds = new ArrayList<>(jobIds);
+        this.resumes = new HashMap<>(resumes);
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.checkReachable = checkReachable;
+        this.listener = listener;
+
+        maxConnectionsTotal = global.getMaxConnectionsTotal();
+        maxConnectionsPerRoute = global.getMaxConnectionsPerRoute();
+        idleConnectionTimeout = global.getIdleConnectionTimeout();
+        connectTimeout = global.getConnectTimeout();
+        socketTimeout = global.getSocketTimeout();
+        requestRate = global.getRequestRate();
+        requestBurst = global.getRequestBurst();
+        maxRetries = global.getMaxRetries();
+        circuitFailureThreshold = global.getCircuitFailureThreshold();
+        circuitOpenTime = global.getCircuitOpenTime();
+        resultCacheTtl = global.getResultCacheTtl();
+        maxJobsPerAppliance = global.getMaxJobsPerAppliance();
+    }
+
+    @Override
+    public Result call() throws IOException {
+        ECXHttpClientPool.configure(maxConnectionsTotal, maxConnectionsPerRoute, idleConnectionTimeout);
+        ECXHttpClientPool.configureTimeouts(connectTimeout, socketTimeout);
+        ECXEndpointGuard.configure(requestRate, requestBurst, maxRetries, circuitFailureThreshold, circuitOpenTime);
+        ECXRequestCoalescer.setTtl(resultCacheTtl);
+        ECXJobSlots.setMaxJobs(maxJobsPerAppliance);
+
+        if (checkReachable) {
+            // nothing probes ECX in the background on the agent, so ask it now
+            ECXEndpoint endpoint = runner.getEndpoint();
+            ECXEndpointHealth health = endpoint.getHealth();
+            if (!health.probe()) {
+                throw new AbortException("ECX at " + endpoint.getUrl() + " is unreachable from the agent: " + health.getLastError());
+            }
+            listener.getLogger().println("ECX at " + endpoint.getUrl() + " is reachable from the agent, round trip " + health.getLatencyMillis() + " ms.");
+        }
+
+        ECXRequestStats requestStats = new ECXRequestStats();
+        try {
+            return new Result(runner.runJobs(jobIds, resumes, maxConcurrentJobs, listener, requestStats), requestStats.summarize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running ECX jobs on the agent", e);
+        }
+    }
+
+    static final class Result implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<ECXJobOutcome> outcomes;
+        private final Map<String, ECXRequestStats.Summary> requests;
+
+        private Result(List<ECXJobOutcome> outcomes, Map<String, ECXRequestStats.Summary> requests) {
+            this.outcomes = outcomes;
+            this.requests = requests;
+        }
+
+        List<ECXJobOutcome> getOutcomes() {
+            return outcomes;
+        }
+
+        Map<String, ECXRequestStats.Summary> getRequests() {
+            return requests;
+        }
+    }
+}
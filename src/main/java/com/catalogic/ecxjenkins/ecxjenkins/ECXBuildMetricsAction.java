@@ -0,0 +1,117 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of the ECX requests a build made and how long its ECX jobs ran, shown on the build page.
+ * <p>
+ * Status polls go through the shared {@link com.catalogic.ecx.sdk.ECXStatusPoller}, where one
+ * request asks for the jobs of several builds. They are listed apart as
+ * {@link com.catalogic.ecx.sdk.ECXJobWatch#POLL_TYPE}: every build counts each poll its jobs were
+ * part of, with an even share of the bytes.
+ */
+public class ECXBuildMetricsAction implements RunAction2 {
+
+    private transient Run<?, ?> run;
+
+    private final Map<String, ECXRequestStats.Summary> requests = new TreeMap<>();
+    private final List<JobTiming> jobs = new ArrayList<>();
+
+    /**
+     * @return the action of the build, added to it first if needed
+     */
+    static ECXBuildMetricsAction of(Run<?, ?> run) {
+        synchronized (run) {
+            ECXBuildMetricsAction action = run.getAction(ECXBuildMetricsAction.class);
+            if (action == null) {
+                action = new ECXBuildMetricsAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    synchronized void addRequests(ECXRequestStats stats) {
+        for (Map.Entry<String, ECXRequestStats.Summary> entry : stats.summarize().entrySet()) {
+            ECXRequestStats.Summary previous = requests.get(entry.getKey());
+            requests.put(entry.getKey(), previous == null ? entry.getValue() : previous.plus(entry.getValue()));
+        }
+    }
+
+    synchronized void addJob(String jobId, String status, long durationMillis) {
+        jobs.add(new JobTiming(jobId, status, durationMillis));
+    }
+
+    public synchronized Map<String, ECXRequestStats.Summary> getRequests() {
+        return Collections.unmodifiableMap(new TreeMap<>(requests));
+    }
+
+    public synchronized List<JobTiming> getJobs() {
+        return Collections.unmodifiableList(new ArrayList<>(jobs));
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "ECX Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ecx-metrics";
+    }
+
+    public static final class JobTiming {
+
+        private final String jobId;
+        private final String status;
+        private final long durationMillis;
+
+        JobTiming(String jobId, String status, long durationMillis) {
+            this.jobId = jobId;
+            this.status = status;
+            this.durationMillis = durationMillis;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the time from launching the job to seeing it end
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
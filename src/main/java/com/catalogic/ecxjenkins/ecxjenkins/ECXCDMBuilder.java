@@ -5,23 +5,48 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.AutoCompletionCandidates;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
+import com.catalogic.ecx.sdk.BackoffPollSchedule;
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXEndpointGuard;
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXHttpClientPool;
+import com.catalogic.ecx.sdk.ECXJobCatalog;
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.ECXMetrics;
+import com.catalogic.ecx.sdk.ECXRequestCoalescer;
+import com.catalogic.ecx.sdk.ECXRequestStats;
 import com.catalogic.ecx.sdk.ECXSdk;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import com.catalogic.ecx.sdk.PollSchedule;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpSession;
+import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +77,23 @@ public class ECXCDMBuilder extends Builder implements SimpleBuildStep {
     private final static int second = 1000;
     private final static int resolution = 2;
 
+    private Integer fastPollCount;
+    private Integer pollInterval;
+    private Integer maxPollInterval;
+    private Double pollBackoffMultiplier;
+    private Integer pollJitter;
+    private int maxConcurrentJobs = DEFAULT_MAX_CONCURRENT_JOBS;
+    private ECXResultPolicy resultPolicy;
+    private Boolean tailJobLog;
+    private ECXLaunchPolicy launchPolicy;
+    private String endpointGroup;
+    private boolean runOnAgent;
+    private boolean autoTimeout;
+    private String jobDependencies;
+
+    final static int DEFAULT_MAX_CONCURRENT_JOBS = 10;
+    final static double DEFAULT_AUTO_TIMEOUT_FACTOR = 3;
+
     // Fields in config.jelly must match the parameter names in the "DataBoundConstructor"
     @DataBoundConstructor
     public ECXCDMBuilder(String name, String password, String url, String job, boolean production, int maxWaitTime) {
@@ -89,8 +131,151 @@ public class ECXCDMBuilder extends Builder implements SimpleBuildStep {
 public boolean getProduction(){
 	return this.production;
 }
+
+    public Integer getFastPollCount() {
+        return fastPollCount;
+    }
+
+    /**
+     * Per step overrides of the global poll settings. Leave empty to use the global value.
+     */
+    @DataBoundSetter
+    public void setFastPollCount(Integer fastPollCount) {
+        this.fastPollCount = fastPollCount;
+    }
+
+    public Integer getPollInterval() {
+        return pollInterval;
+    }
+
+    @DataBoundSetter
+    public void setPollInterval(Integer pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public Integer getMaxPollInterval() {
+        return maxPollInterval;
+    }
+
+    @DataBoundSetter
+    public void setMaxPollInterval(Integer maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    public Double getPollBackoffMultiplier() {
+        return pollBackoffMultiplier;
+    }
+
+    @DataBoundSetter
+    public void setPollBackoffMultiplier(Double pollBackoffMultiplier) {
+        this.pollBackoffMultiplier = pollBackoffMultiplier;
+    }
+
+    public Integer getPollJitter() {
+        return pollJitter;
+    }
+
+    @DataBoundSetter
+    public void setPollJitter(Integer pollJitter) {
+        this.pollJitter = pollJitter;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs > 0 ? maxConcurrentJobs : DEFAULT_MAX_CONCURRENT_JOBS;
+    }
+
+    /**
+     * The number of ECX jobs from the job field that may run at the same time.
+     */
+    @DataBoundSetter
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+    }
+
+    public ECXResultPolicy getResultPolicy() {
+        return resultPolicy == null ? ECXResultPolicy.ALLOW_PARTIAL : resultPolicy;
+    }
+
+    @DataBoundSetter
+    public void setResultPolicy(ECXResultPolicy resultPolicy) {
+        this.resultPolicy = resultPolicy;
+    }
+
+    public ECXLaunchPolicy getLaunchPolicy() {
+        return launchPolicy == null ? ECXLaunchPolicy.FORCE : launchPolicy;
+    }
+
+    @DataBoundSetter
+    public void setLaunchPolicy(ECXLaunchPolicy launchPolicy) {
+        this.launchPolicy = launchPolicy;
+    }
+
+    public boolean getTailJobLog() {
+        return tailJobLog == null || tailJobLog;
+    }
+
+    /**
+     * Whether new entries of the ECX job session log are copied to the build console while the job runs.
+     */
+    @DataBoundSetter
+    public void setTailJobLog(boolean tailJobLog) {
+        this.tailJobLog = tailJobLog;
+    }
+
+    public String getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    /**
+     * Runs the job of a global {@link ECXEndpointGroup} instead of the job at the url above.
+     */
+    @DataBoundSetter
+    public void setEndpointGroup(String endpointGroup) {
+        this.endpointGroup = StringUtils.isEmpty(endpointGroup) ? null : endpointGroup;
+    }
+
+    public boolean getRunOnAgent() {
+        return runOnAgent;
+    }
+
+    /**
+     * Whether the jobs are launched and monitored from the build's agent rather than the controller.
+     */
+    @DataBoundSetter
+    public void setRunOnAgent(boolean runOnAgent) {
+        this.runOnAgent = runOnAgent;
+    }
+
+    public boolean getAutoTimeout() {
+        return autoTimeout;
+    }
+
+    /**
+     * Whether a job with enough recorded runs is waited for a multiple of its p99 duration instead of the max wait time.
+     */
+    @DataBoundSetter
+    public void setAutoTimeout(boolean autoTimeout) {
+        this.autoTimeout = autoTimeout;
+    }
+
+    public String getJobDependencies() {
+        return jobDependencies;
+    }
+
+    /**
+     * Lines of {@code job: upstream, upstream}, each job waiting for its upstream jobs to complete, see {@link ECXJobGraph}.
+     */
+    @DataBoundSetter
+    public void setJobDependencies(String jobDependencies) {
+        this.jobDependencies = StringUtils.isBlank(jobDependencies) ? null : jobDependencies;
+    }
+
+    PollSchedule createPollSchedule() {
+        return getDescriptor().createPollSchedule(fastPollCount, pollInterval, maxPollInterval, pollBackoffMultiplier, pollJitter);
+    }
+
     @Override
-    public void perform(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws AbortException {
+    public void perform(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws InterruptedException, IOException {
         // This is where you 'build' the project.
         // Since this is a dummy, we just say 'hello world' and call that a build.
 
@@ -99,68 +284,172 @@ public boolean getProduction(){
     	
     	if (getDescriptor().getProduction())
             listener.getLogger().println("Bonjour, " + name + "!");
+        else if (endpointGroup != null)
+            listener.getLogger().println("Executing an ECX CDM Job of endpoint group " + endpointGroup);
         else
             listener.getLogger().println("Executing an ECX CDM Job using the following information, " + name + " " + url);
 
-    	ECXSdk ecx = new ECXSdk(name, password, url, production);
-        ecx.connect();
-        ecx.runJob(job);
-
-        String msg = "";
-        String lastMessage = "";
-
-        int wait = 0;
-
-        /**
-         * TODO - job monitor is not expected to have FAILED, PARTIAL or COMPLETED. Fix this.
-         */
-        while (msg.compareTo("PARTIAL") != 0 && msg.compareTo("FAILED") != 0 && msg.compareTo("COMPLETED") != 0 && msg.compareTo("IDLE") != 0 && wait < (maxWaitTime * resolution)) {
-
-            wait++;
-            msg = getECXJobInfo(ecx, true);
-
-            if (!StringUtils.isEmpty(msg) && msg.compareTo(lastMessage) != 0) {
-
-                listener.getLogger().println(msg);
+        // only the agent may be able to reach ECX, so the controller neither checks nor probes it then
+        boolean onAgent = runOnAgent && workspace != null && workspace.isRemote();
+        ECXEndpoint endpoint;
+        List<String> jobIds;
+        if (endpointGroup != null) {
+            ECXEndpointGroup group = getDescriptor().getEndpointGroupByName(endpointGroup);
+            ECXEndpointGroupMember member = onAgent ? group.selectOnAgent(launcher.getChannel(), listener) : group.select(listener);
+            endpoint = member.getEndpoint();
+            jobIds = parseJobIds(member.getJob());
+        } else {
+            endpoint = new ECXEndpoint(name, password, url, production);
+            if (!onAgent) {
+                checkReachable(endpoint, listener);
             }
+            jobIds = parseJobIds(job);
+        }
 
-            try {
-                Thread.sleep(second / resolution);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        ECXJobGraph graph;
+        try {
+            graph = ECXJobGraph.parse(jobIds, jobDependencies);
+        } catch (IllegalArgumentException e) {
+            throw new AbortException("Invalid ECX job dependencies: " + e.getMessage());
+        }
+        boolean partialCompletes = getResultPolicy() != ECXResultPolicy.ALL_SUCCEED;
+
+        Map<String, ECXJobHistory.Estimate> estimates = new HashMap<>();
+        double timeoutFactor = autoTimeout ? getDescriptor().getAutoTimeoutFactor() : 0;
+        // a run launched longer ago than the step waits for would have timed out, it is not reattached to
+        long maxWaitMillis = maxWaitTime * 1000L;
+        for (String jobId : jobIds) {
+            ECXJobHistory.Estimate estimate = ECXJobHistory.get(endpoint.getUrl(), jobId).estimate();
+            if (estimate != null) {
+                estimates.put(jobId, estimate);
+                if (timeoutFactor > 0) {
+                    maxWaitMillis = Math.max(maxWaitMillis, Math.max(ECXJobRunner.MIN_AUTO_WAIT, estimate.getTimeout(timeoutFactor)));
+                }
             }
-
-            lastMessage = msg;
         }
-        if (!StringUtils.isEmpty(msg)) {
-            if (msg.compareTo("ACTIVE") == 0) {
-                throw new AbortException("ECX CDM Build step for job " + job + " timed out waiting for the ECX job to complete! You may want to check ECX to see how long the job ran and potentially increase the configuration timeout.");
+        Map<String, ECXJobRunner.Resume> resumes = ECXJobRunAction.findResumes(build, endpoint, jobIds, maxWaitMillis, listener);
+        ECXJobRunner.Progress progress = ECXJobRunAction.of(build).recorder(endpoint);
+
+        ECXRequestStats requestStats = new ECXRequestStats();
+        List<ECXJobOutcome> outcomes;
+        try {
+            if (onAgent) {
+                listener.getLogger().println("Running the ECX jobs on the agent.");
+                ECXJobRunner runner = new ECXJobRunner(endpoint, createPollSchedule(), maxWaitTime, getLaunchPolicy(), getTailJobLog(), false,
+                        launcher.getChannel().export(ECXJobRunner.Progress.class, progress));
+                runner.useHistory(estimates, timeoutFactor);
+                runner.useGraph(graph, partialCompletes);
+                ECXAgentCallable.Result result = launcher.getChannel().call(
+                        new ECXAgentCallable(runner, jobIds, resumes, getMaxConcurrentJobs(), endpointGroup == null, listener, getDescriptor()));
+                outcomes = result.getOutcomes();
+                requestStats.add(result.getRequests());
+                ECXMetrics.getRequests().add(result.getRequests());
+            } else {
+                ECXJobRunner runner = new ECXJobRunner(endpoint, createPollSchedule(), maxWaitTime, getLaunchPolicy(), getTailJobLog(),
+                        getDescriptor().getCallbacksEnabled(), progress);
+                runner.useHistory(estimates, timeoutFactor);
+                runner.useGraph(graph, partialCompletes);
+                outcomes = runner.runJobs(jobIds, resumes, getMaxConcurrentJobs(), listener, requestStats);
             }
+        } finally {
+            ECXBuildMetricsAction.of(build).addRequests(requestStats);
         }
-        msg = getECXJobInfo(ecx, false);
-        listener.getLogger().println(msg);
 
-        if (!StringUtils.isEmpty(msg)) {
-            if (msg.compareTo("FAILED") == 0) {
-                throw new AbortException("ECX " + job + " Failed!");
+        int failed = 0;
+        int partial = 0;
+        ECXBuildMetricsAction metrics = ECXBuildMetricsAction.of(build);
+        for (ECXJobOutcome outcome : outcomes) {
+            if (outcome.getDurationMillis() >= 0) {
+                metrics.addJob(outcome.getJobId(), outcome.isTimedOut() ? "TIMED OUT" : outcome.getStatus(), outcome.getDurationMillis());
+                // a run this build attached to is only partly seen, its duration says nothing about the job
+                if (outcome.isWatchedFromLaunch()) {
+                    ECXMetrics.recordJob(outcome.getStatus(), outcome.getDurationMillis());
+                    ECXJobHistory.get(endpoint.getUrl(), outcome.getJobId()).record(System.currentTimeMillis(), outcome.getDurationMillis(), outcome.getStatus());
+                }
+            }
+            if (outcome.isFailed()) {
+                failed++;
+            } else if (outcome.isPartial()) {
+                partial++;
+            }
+            if (jobIds.size() > 1) {
+                listener.getLogger().println(outcome.getMessage());
             }
         }
-    }
 
-    private String getECXJobInfo(ECXSdk ecx, boolean monitor) {
+        switch (getResultPolicy()) {
+            case MARK_UNSTABLE:
+                if (failed + partial > 0) {
+                    listener.getLogger().println((failed + partial) + " of " + outcomes.size() + " ECX jobs did not complete, marking the build unstable.");
+                    build.setResult(Result.UNSTABLE);
+                }
+                break;
+            case ALL_SUCCEED:
+                failed += partial;
+                // fall through
+            default:
+                if (failed > 0) {
+                    throw new AbortException(jobIds.size() == 1 ? outcomes.get(0).getMessage() : failed + " of " + outcomes.size() + " ECX jobs did not complete!");
+                }
+        }
+    }
 
-        if (monitor) {
-            ecx.monitorJob(job);
+    /**
+     * Adds the duration history of the configured jobs to the project page.
+     */
+    @Override
+    public Collection<? extends Action> getProjectActions(AbstractProject<?, ?> project) {
+        List<String> urls = new ArrayList<>();
+        List<String> jobIds = new ArrayList<>();
+        if (endpointGroup != null) {
+            for (ECXEndpointGroup group : getDescriptor().getEndpointGroups()) {
+                if (group.getName().equals(endpointGroup)) {
+                    for (ECXEndpointGroupMember member : group.getMembers()) {
+                        for (String jobId : parseJobIds(member.getJob())) {
+                            urls.add(member.getUrl());
+                            jobIds.add(jobId);
+                        }
+                    }
+                }
+            }
         } else {
-            ecx.getJobResult(job);
+            for (String jobId : parseJobIds(job)) {
+                urls.add(url);
+                jobIds.add(jobId);
+            }
         }
+        return Collections.singletonList(new ECXJobHistoryAction(project, urls, jobIds));
+    }
 
-        Iterator<String> _i = ecx.getStatus();
-        String msg = (String) _i.next();
-        _i.remove();
-
-        return msg;
+    /**
+     * Fails fast when the background prober saw the endpoint down and it still does not answer,
+     * instead of letting the build hang on the first request.
+     *
+     * @throws AbortException naming the endpoint and why it could not be reached
+     */
+    static void checkReachable(ECXEndpoint endpoint, TaskListener listener) throws AbortException {
+        ECXEndpointHealth health = endpoint.getHealth();
+        if (!health.checkReachable()) {
+            throw new AbortException("ECX at " + endpoint.getUrl() + " is unreachable: " + health.getLastError());
+        }
+        if (health.getLatencyMillis() >= 0) {
+            listener.getLogger().println("ECX at " + endpoint.getUrl() + " is reachable, round trip " + health.getLatencyMillis() + " ms.");
+        }
+    }
 
+    /**
+     * Splits the job field into job ids. Ids may be separated by commas or whitespace.
+     */
+    static List<String> parseJobIds(String value) {
+        List<String> jobIds = new ArrayList<>();
+        if (value != null) {
+            for (String jobId : value.split("[,\\s]+")) {
+                if (!jobId.isEmpty() && !jobIds.contains(jobId)) {
+                    jobIds.add(jobId);
+                }
+            }
+        }
+        return jobIds;
     }
 
     // Overridden for better type safety.
@@ -190,6 +479,32 @@ public boolean getProduction(){
          */
      //   private boolean useFrench;
         private boolean production;
+        private int maxConnectionsTotal = ECXHttpClientPool.DEFAULT_MAX_TOTAL;
+        private int maxConnectionsPerRoute = ECXHttpClientPool.DEFAULT_MAX_PER_ROUTE;
+        private int idleConnectionTimeout = ECXHttpClientPool.DEFAULT_IDLE_TIMEOUT;
+        private int fastPollCount = 10;
+        private int pollInterval = 2;
+        private int maxPollInterval = 30;
+        private double pollBackoffMultiplier = 1.5;
+        private int pollJitter = 20;
+        private int jobCatalogTtl = ECXJobCatalog.DEFAULT_TTL;
+        private int requestRate = ECXEndpointGuard.DEFAULT_REQUEST_RATE;
+        private int requestBurst = ECXEndpointGuard.DEFAULT_REQUEST_BURST;
+        private int maxRetries = ECXEndpointGuard.DEFAULT_MAX_RETRIES;
+        private int circuitFailureThreshold = ECXEndpointGuard.DEFAULT_FAILURE_THRESHOLD;
+        private int circuitOpenTime = ECXEndpointGuard.DEFAULT_OPEN_TIME;
+        private int resultCacheTtl = ECXRequestCoalescer.DEFAULT_TTL;
+        private boolean callbacksEnabled;
+        private int callbackSafetyNetInterval = ECXStatusPoller.DEFAULT_SAFETY_NET_INTERVAL;
+        private int connectTimeout = ECXHttpClientPool.DEFAULT_CONNECT_TIMEOUT;
+        private int socketTimeout = ECXHttpClientPool.DEFAULT_SOCKET_TIMEOUT;
+        private int healthProbeInterval = ECXHealthProber.DEFAULT_INTERVAL;
+        private List<ECXEndpointGroup> endpointGroups = new ArrayList<>();
+        private double autoTimeoutFactor = DEFAULT_AUTO_TIMEOUT_FACTOR;
+        private int maxJobsPerAppliance = ECXJobSlots.DEFAULT_MAX_JOBS;
+
+        private final static int maxJobListSize = 200;
+        private final static int maxAutoCompleteSize = 20;
 
         /**
          * In order to load the persisted global configuration, you have to
@@ -197,6 +512,17 @@ public boolean getProduction(){
          */
         public DescriptorImpl() {
             load();
+            ECXHttpClientPool.configure(maxConnectionsTotal, maxConnectionsPerRoute, idleConnectionTimeout);
+            ECXHttpClientPool.configureTimeouts(connectTimeout, socketTimeout);
+            ECXJobCatalog.setTtl(jobCatalogTtl);
+            ECXEndpointGuard.configure(requestRate, requestBurst, maxRetries, circuitFailureThreshold, circuitOpenTime);
+            ECXRequestCoalescer.setTtl(resultCacheTtl);
+            ECXStatusPoller.setSafetyNetInterval(callbackSafetyNetInterval);
+            ECXJobSlots.setMaxJobs(maxJobsPerAppliance);
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins != null) {
+                ECXJobHistory.setDirectory(new File(jenkins.getRootDir(), "ecx-job-history"));
+            }
         }
 
         /**
@@ -236,14 +562,36 @@ public boolean getProduction(){
         }
 
         public FormValidation doCheckJob(@QueryParameter String value) {
+            List<String> jobIds = parseJobIds(value);
+            if (jobIds.isEmpty()) {
+                return FormValidation.error("Please check to ensure you are using a valid job id.");
+            }
+            for (String jobId : jobIds) {
+                try {
+                    Integer.parseInt(jobId);
+                } catch (NumberFormatException e) {
+                    return FormValidation.error("Please check to ensure you are using a valid job id: " + jobId);
+                }
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckJobDependencies(@QueryParameter String value, @QueryParameter String job) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
             try {
-                Integer.parseInt(value);
+                ECXJobGraph.parse(parseJobIds(job), value);
                 return FormValidation.ok();
-            } catch (NumberFormatException e) {
-                return FormValidation.error("Please check to ensure you are using a valid job id.");
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
             }
         }
 
+        public FormValidation doCheckMaxConcurrentJobs(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
         public FormValidation doTestConnection(@QueryParameter("name") final String name,
                                                @QueryParameter("password") final String password,
                                                @QueryParameter("url") final String url,
@@ -263,25 +611,75 @@ public boolean getProduction(){
                 @QueryParameter("name") final String name,
                 @QueryParameter("password") final String password,
                 @QueryParameter("url") final String url,
-                @QueryParameter("production") final boolean production
+                @QueryParameter("production") final boolean production,
+                @QueryParameter("jobSearch") final String jobSearch
         ) {
 
             ListBoxModel _items = new ListBoxModel();
-            ECXSdk ecx = new ECXSdk(name, password, url, production);
-            ecx.connect();
-            ecx.setJobList();
+            ECXJobCatalog catalog = ECXJobCatalog.get(name, password, url, production);
+            rememberCatalog(name, url, production);
 
-            Iterator it = ecx.getJobList().entrySet().iterator();
-
-            while (it.hasNext()) {
-                Map.Entry pair = (Map.Entry) it.next();
-                _items.add((String) pair.getValue(), (String) pair.getKey());
-                it.remove(); // avoids a ConcurrentModificationException
+            List<ECXJobCatalog.Job> jobs = catalog.search(jobSearch, maxJobListSize + 1);
+            for (ECXJobCatalog.Job job : jobs.subList(0, Math.min(jobs.size(), maxJobListSize))) {
+                _items.add(job.getLabel(), job.getId());
+            }
+            if (jobs.size() > maxJobListSize) {
+                _items.add("... only the first " + maxJobListSize + " matches are listed, narrow your search", "");
             }
             return _items;
 
         }
 
+        /**
+         * Suggests job names from the catalogs this user loaded through {@link #doFillJobListItems}.
+         * Autocompletion only receives the typed value, so the endpoints are kept in the HTTP session.
+         */
+        public AutoCompletionCandidates doAutoCompleteJobSearch(@QueryParameter final String value) {
+            AutoCompletionCandidates candidates = new AutoCompletionCandidates();
+
+            List<String> endpoints = sessionCatalogs();
+            synchronized (endpoints) {
+                for (String endpoint : endpoints) {
+                    String[] parts = endpoint.split("\\|", 3);
+                    ECXJobCatalog catalog = ECXJobCatalog.getIfPresent(parts[1], parts[0], Boolean.parseBoolean(parts[2]));
+                    if (catalog == null) {
+                        continue;
+                    }
+                    for (ECXJobCatalog.Job job : catalog.search(value, maxAutoCompleteSize)) {
+                        candidates.add(job.getLabel().substring(0, job.getLabel().lastIndexOf(" [")));
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        private void rememberCatalog(String name, String url, boolean production) {
+            List<String> endpoints = sessionCatalogs();
+            synchronized (endpoints) {
+                String endpoint = url + "|" + name + "|" + production;
+                if (!endpoints.contains(endpoint)) {
+                    endpoints.add(endpoint);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<String> sessionCatalogs() {
+            StaplerRequest request = Stapler.getCurrentRequest();
+            if (request == null) {
+                return new ArrayList<>();
+            }
+            HttpSession session = request.getSession();
+            synchronized (session) {
+                List<String> endpoints = (List<String>) session.getAttribute(ECXJobCatalog.class.getName());
+                if (endpoints == null) {
+                    endpoints = new ArrayList<>();
+                    session.setAttribute(ECXJobCatalog.class.getName(), endpoints);
+                }
+                return endpoints;
+            }
+        }
+
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
             // Indicates that this builder can be used with all kinds of project types
             return true;
@@ -300,7 +698,37 @@ public boolean getProduction(){
             // To persist global configuration information,
             // set that to properties and call save().
           //  useFrench = formData.getBoolean("useFrench");
-        	production = formData.getBoolean("production");
+        	production = formData.optBoolean("production", false);
+            maxConnectionsTotal = formData.optInt("maxConnectionsTotal", ECXHttpClientPool.DEFAULT_MAX_TOTAL);
+            maxConnectionsPerRoute = formData.optInt("maxConnectionsPerRoute", ECXHttpClientPool.DEFAULT_MAX_PER_ROUTE);
+            idleConnectionTimeout = formData.optInt("idleConnectionTimeout", ECXHttpClientPool.DEFAULT_IDLE_TIMEOUT);
+            ECXHttpClientPool.configure(maxConnectionsTotal, maxConnectionsPerRoute, idleConnectionTimeout);
+            connectTimeout = formData.optInt("connectTimeout", ECXHttpClientPool.DEFAULT_CONNECT_TIMEOUT);
+            socketTimeout = formData.optInt("socketTimeout", ECXHttpClientPool.DEFAULT_SOCKET_TIMEOUT);
+            ECXHttpClientPool.configureTimeouts(connectTimeout, socketTimeout);
+            healthProbeInterval = formData.optInt("healthProbeInterval", ECXHealthProber.DEFAULT_INTERVAL);
+            endpointGroups = new ArrayList<>(req.bindJSONToList(ECXEndpointGroup.class, formData.opt("endpointGroups")));
+            fastPollCount = formData.optInt("fastPollCount", 10);
+            pollInterval = formData.optInt("pollInterval", 2);
+            maxPollInterval = formData.optInt("maxPollInterval", 30);
+            pollBackoffMultiplier = formData.optDouble("pollBackoffMultiplier", 1.5);
+            pollJitter = formData.optInt("pollJitter", 20);
+            jobCatalogTtl = formData.optInt("jobCatalogTtl", ECXJobCatalog.DEFAULT_TTL);
+            ECXJobCatalog.setTtl(jobCatalogTtl);
+            requestRate = formData.optInt("requestRate", ECXEndpointGuard.DEFAULT_REQUEST_RATE);
+            requestBurst = formData.optInt("requestBurst", ECXEndpointGuard.DEFAULT_REQUEST_BURST);
+            maxRetries = formData.optInt("maxRetries", ECXEndpointGuard.DEFAULT_MAX_RETRIES);
+            circuitFailureThreshold = formData.optInt("circuitFailureThreshold", ECXEndpointGuard.DEFAULT_FAILURE_THRESHOLD);
+            circuitOpenTime = formData.optInt("circuitOpenTime", ECXEndpointGuard.DEFAULT_OPEN_TIME);
+            ECXEndpointGuard.configure(requestRate, requestBurst, maxRetries, circuitFailureThreshold, circuitOpenTime);
+            resultCacheTtl = formData.optInt("resultCacheTtl", ECXRequestCoalescer.DEFAULT_TTL);
+            ECXRequestCoalescer.setTtl(resultCacheTtl);
+            callbacksEnabled = formData.optBoolean("callbacksEnabled", false);
+            callbackSafetyNetInterval = formData.optInt("callbackSafetyNetInterval", ECXStatusPoller.DEFAULT_SAFETY_NET_INTERVAL);
+            ECXStatusPoller.setSafetyNetInterval(callbackSafetyNetInterval);
+            autoTimeoutFactor = formData.optDouble("autoTimeoutFactor", DEFAULT_AUTO_TIMEOUT_FACTOR);
+            maxJobsPerAppliance = formData.optInt("maxJobsPerAppliance", ECXJobSlots.DEFAULT_MAX_JOBS);
+            ECXJobSlots.setMaxJobs(maxJobsPerAppliance);
             
             // ^Can also use req.bindJSON(this, formData);
             //  (easier when there are many fields; need set* methods for this, like setUseFrench)
@@ -320,6 +748,264 @@ public boolean getProduction(){
         public boolean getProduction() {
             return production;
         }
+
+        public int getMaxConnectionsTotal() {
+            return maxConnectionsTotal;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public int getIdleConnectionTimeout() {
+            return idleConnectionTimeout;
+        }
+
+        public int getFastPollCount() {
+            return fastPollCount;
+        }
+
+        /**
+         * Builds a poll schedule from per step overrides, falling back to the global settings for
+         * anything the step leaves empty.
+         */
+        PollSchedule createPollSchedule(Integer fastPolls, Integer interval, Integer maxInterval, Double multiplier, Integer jitter) {
+            int fast = fastPolls != null ? fastPolls : fastPollCount;
+            int initial = interval != null ? interval : pollInterval;
+            int max = maxInterval != null ? maxInterval : maxPollInterval;
+            double backoff = multiplier != null ? multiplier : pollBackoffMultiplier;
+            int jitterPercent = jitter != null ? jitter : pollJitter;
+
+            return new BackoffPollSchedule(fast, second / resolution, initial * second, backoff, max * second, jitterPercent / 100.0);
+        }
+
+        public int getPollInterval() {
+            return pollInterval;
+        }
+
+        public int getMaxPollInterval() {
+            return maxPollInterval;
+        }
+
+        public double getPollBackoffMultiplier() {
+            return pollBackoffMultiplier;
+        }
+
+        public int getPollJitter() {
+            return pollJitter;
+        }
+
+        public int getJobCatalogTtl() {
+            return jobCatalogTtl;
+        }
+
+        public int getRequestRate() {
+            return requestRate;
+        }
+
+        public int getRequestBurst() {
+            return requestBurst;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public int getCircuitFailureThreshold() {
+            return circuitFailureThreshold;
+        }
+
+        public int getCircuitOpenTime() {
+            return circuitOpenTime;
+        }
+
+        public boolean getCallbacksEnabled() {
+            return callbacksEnabled;
+        }
+
+        public int getCallbackSafetyNetInterval() {
+            return callbackSafetyNetInterval;
+        }
+
+        public FormValidation doCheckCallbackSafetyNetInterval(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public List<ECXEndpointGroup> getEndpointGroups() {
+            return endpointGroups == null ? Collections.<ECXEndpointGroup>emptyList() : Collections.unmodifiableList(endpointGroups);
+        }
+
+        /**
+         * @throws AbortException if there is no such group
+         */
+        ECXEndpointGroup getEndpointGroupByName(String groupName) throws AbortException {
+            for (ECXEndpointGroup group : getEndpointGroups()) {
+                if (group.getName().equals(groupName)) {
+                    return group;
+                }
+            }
+            throw new AbortException("There is no ECX endpoint group named " + groupName + " in the global configuration.");
+        }
+
+        public ListBoxModel doFillEndpointGroupItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add("None, use the job at the url above", "");
+            for (ECXEndpointGroup group : getEndpointGroups()) {
+                items.add(group.getName(), group.getName());
+            }
+            return items;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public FormValidation doCheckConnectTimeout(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public int getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public FormValidation doCheckSocketTimeout(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        /**
+         * @return seconds between endpoint health probes, 0 when probing is off
+         */
+        public int getHealthProbeInterval() {
+            return healthProbeInterval;
+        }
+
+        public FormValidation doCheckHealthProbeInterval(@QueryParameter String value) {
+            return checkNonNegativeNumber(value);
+        }
+
+        public int getResultCacheTtl() {
+            return resultCacheTtl;
+        }
+
+        public FormValidation doCheckResultCacheTtl(@QueryParameter String value) {
+            return checkNonNegativeNumber(value);
+        }
+
+        /**
+         * @return how many jobs builds of this Jenkins run at the same time on one ECX appliance, 0 for no limit
+         */
+        public int getMaxJobsPerAppliance() {
+            return maxJobsPerAppliance;
+        }
+
+        public FormValidation doCheckMaxJobsPerAppliance(@QueryParameter String value) {
+            return checkNonNegativeNumber(value);
+        }
+
+        public FormValidation doCheckRequestRate(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckRequestBurst(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckMaxRetries(@QueryParameter String value) {
+            return checkNonNegativeNumber(value);
+        }
+
+        public FormValidation doCheckCircuitFailureThreshold(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckCircuitOpenTime(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckJobCatalogTtl(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckPollBackoffMultiplier(@QueryParameter String value) {
+            if (StringUtils.isEmpty(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                if (Double.parseDouble(value) < 1.0) {
+                    return FormValidation.error("The backoff multiplier should be at least 1.");
+                }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("The backoff multiplier needs to be a number.");
+            }
+        }
+
+        /**
+         * @return the multiple of a job's p99 duration that steps with an automatic timeout wait for
+         */
+        public double getAutoTimeoutFactor() {
+            return autoTimeoutFactor > 0 ? autoTimeoutFactor : DEFAULT_AUTO_TIMEOUT_FACTOR;
+        }
+
+        public FormValidation doCheckAutoTimeoutFactor(@QueryParameter String value) {
+            try {
+                if (Double.parseDouble(value) < 1.0) {
+                    return FormValidation.error("The timeout factor should be at least 1.");
+                }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("The timeout factor needs to be a number.");
+            }
+        }
+
+        public FormValidation doCheckPollJitter(@QueryParameter String value) {
+            if (StringUtils.isEmpty(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                int jitter = Integer.parseInt(value);
+                if (jitter < 0 || jitter > 100) {
+                    return FormValidation.error("The jitter should be a percentage between 0 and 100.");
+                }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("The jitter needs to be a number.");
+            }
+        }
+
+        public FormValidation doCheckMaxConnectionsTotal(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckMaxConnectionsPerRoute(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        public FormValidation doCheckIdleConnectionTimeout(@QueryParameter String value) {
+            return checkPositiveNumber(value);
+        }
+
+        private FormValidation checkNonNegativeNumber(String value) {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    return FormValidation.error("The value should be 0 or more.");
+                }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("The value needs to be a number.");
+            }
+        }
+
+        private FormValidation checkPositiveNumber(String value) {
+            try {
+                if (Integer.parseInt(value) <= 0) {
+                    return FormValidation.error("The value should be a number greater than 0.");
+                }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("The value needs to be a number.");
+            }
+        }
         
     }
 }
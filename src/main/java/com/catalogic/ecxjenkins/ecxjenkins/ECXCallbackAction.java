@@ -0,0 +1,105 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXJobWatch;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.binary.Hex;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Receives notifications that an ECX job session ended, at {@code JENKINS_URL/ecx-callback/notify}.
+ * <p>
+ * Every waiting build step registers its watch under a random token and prints the URL to call,
+ * e.g. from an ECX job script or a relay on the ECX side. The endpoint needs no Jenkins
+ * credentials, so a valid token only wakes the status poller up; the job status itself is always
+ * read from ECX.
+ */
+@Extension
+public class ECXCallbackAction implements UnprotectedRootAction {
+
+    final static String URL_NAME = "ecx-callback";
+
+    private static final Map<String, ECXJobWatch> watches = new ConcurrentHashMap<>();
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * @return the token under which a callback wakes up the watch
+     */
+    static String register(ECXJobWatch watch) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        String token = Hex.encodeHexString(bytes);
+        watches.put(token, watch);
+        return token;
+    }
+
+    static void unregister(String token) {
+        if (token != null) {
+            watches.remove(token);
+        }
+    }
+
+    /**
+     * @return the absolute callback URL for the token, or a relative one if the Jenkins URL is not configured
+     */
+    static String getCallbackUrl(String token) {
+        String root = Jenkins.getInstance().getRootUrl();
+        return (root == null ? "/" : root) + URL_NAME + "/notify?token=" + token;
+    }
+
+    @RequirePOST
+    public HttpResponse doNotify(@QueryParameter String token) {
+        ECXJobWatch watch = token == null ? null : watches.get(token);
+        if (watch == null || !ECXStatusPoller.wake(watch)) {
+            return HttpResponses.notFound();
+        }
+        return HttpResponses.plainText("OK");
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Lets ECX post callbacks without a crumb; they carry the per build token instead.
+     */
+    @Extension
+    public static class CallbackCrumbExclusion extends CrumbExclusion {
+
+        @Override
+        public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain) throws IOException, ServletException {
+            String path = req.getPathInfo();
+            if (path != null && path.startsWith("/" + URL_NAME + "/")) {
+                chain.doFilter(req, resp);
+                return true;
+            }
+            return false;
+        }
+    }
+}
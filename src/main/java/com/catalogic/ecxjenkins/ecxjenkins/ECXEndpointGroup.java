@@ -0,0 +1,163 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXEndpointSelection;
+import com.catalogic.ecx.sdk.ECXHttpClientPool;
+import com.catalogic.ecx.sdk.ECXSdk;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.model.Jenkins;
+import jenkins.security.MasterToSlaveCallable;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A logical ECX job that several appliances can run, configured globally. A build using the group
+ * runs the job on whichever member {@link #select} picks at launch time.
+ */
+public class ECXEndpointGroup extends AbstractDescribableImpl<ECXEndpointGroup> {
+
+    private final String name;
+    private final List<ECXEndpointGroupMember> members;
+    private ECXEndpointSelection selection;
+
+    @DataBoundConstructor
+    public ECXEndpointGroup(String name, List<ECXEndpointGroupMember> members, ECXEndpointSelection selection) {
+        this.name = name;
+        this.members = members == null ? new ArrayList<ECXEndpointGroupMember>() : new ArrayList<>(members);
+        this.selection = selection;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<ECXEndpointGroupMember> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    public ECXEndpointSelection getSelection() {
+        return selection == null ? ECXEndpointSelection.LEAST_LOADED : selection;
+    }
+
+    /**
+     * Tries the members in the order of the group's {@link ECXEndpointSelection} and returns the
+     * first one that answers and accepts the login. Members that do not are skipped, so a build
+     * fails over to the next appliance instead of failing.
+     *
+     * @throws AbortException if no member could be reached
+     */
+    public ECXEndpointGroupMember select(TaskListener listener) throws AbortException {
+        Map<ECXEndpointGroupMember, ECXEndpoint> candidates = new LinkedHashMap<>();
+        for (ECXEndpointGroupMember member : members) {
+            candidates.put(member, member.getEndpoint());
+        }
+
+        for (ECXEndpointGroupMember member : getSelection().rank(candidates)) {
+            ECXEndpoint endpoint = candidates.get(member);
+            ECXEndpointHealth health = endpoint.getHealth();
+            if (!health.checkReachable()) {
+                listener.getLogger().println("Skipping ECX at " + endpoint.getUrl() + ", it is unreachable: " + health.getLastError());
+                continue;
+            }
+            try {
+                new ECXSdk(endpoint).connect();
+            } catch (RuntimeException e) {
+                listener.getLogger().println("Skipping ECX at " + endpoint.getUrl() + ", failed to log in: " + e.getMessage());
+                continue;
+            }
+            listener.getLogger().println("Endpoint group " + name + ": running job " + member.getJob() + " on ECX at " + endpoint.getUrl()
+                    + " (" + ECXStatusPoller.getWatchedJobs(endpoint.getUrl()) + " jobs running, round trip " + health.getLatencyMillis() + " ms).");
+            return member;
+        }
+        throw new AbortException("None of the " + members.size() + " ECX appliances of endpoint group " + name + " is reachable.");
+    }
+
+    /**
+     * Selects a member like {@link #select}, but from the agent, for builds whose ECX requests run
+     * there: the controller may not reach the appliances at all, so its health probes and job
+     * counts say nothing. The agent pings every member and ranks them by those round trips and the
+     * jobs it waits on itself.
+     *
+     * @throws AbortException if no member could be reached from the agent
+     */
+    public ECXEndpointGroupMember selectOnAgent(VirtualChannel agent, TaskListener listener) throws IOException, InterruptedException {
+        List<ECXEndpoint> endpoints = new ArrayList<>();
+        for (ECXEndpointGroupMember member : members) {
+            endpoints.add(member.getEndpoint());
+        }
+        ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        int index = agent.call(new AgentSelection(name, endpoints, getSelection(), global.getConnectTimeout(), global.getSocketTimeout(), listener));
+        ECXEndpointGroupMember member = members.get(index);
+        listener.getLogger().println("Endpoint group " + name + ": running job " + member.getJob() + " on ECX at " + endpoints.get(index).getUrl() + ".");
+        return member;
+    }
+
+    private static final class AgentSelection extends MasterToSlaveCallable<Integer, IOException> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final List<ECXEndpoint> endpoints;
+        private final ECXEndpointSelection selection;
+        private final int connectTimeout;
+        private final int socketTimeout;
+        private final TaskListener listener;
+
+        private AgentSelection(String name, List<ECXEndpoint> endpoints, ECXEndpointSelection selection, int connectTimeout, int socketTimeout,
+                               TaskListener listener) {
+            this.name = name;
+            this.endpoints = endpoints;
+            this.selection = selection;
+            this.connectTimeout = connectTimeout;
+            this.socketTimeout = socketTimeout;
+            this.listener = listener;
+        }
+
+        @Override
+        public Integer call() throws IOException {
+            ECXHttpClientPool.configureTimeouts(connectTimeout, socketTimeout);
+
+            Map<Integer, ECXEndpoint> candidates = new LinkedHashMap<>();
+            for (int i = 0; i < endpoints.size(); i++) {
+                // nothing probes in the background on the agent, the probe also logs in
+                endpoints.get(i).getHealth().probe();
+                candidates.put(i, endpoints.get(i));
+            }
+
+            for (Integer index : selection.rank(candidates)) {
+                ECXEndpoint endpoint = endpoints.get(index);
+                ECXEndpointHealth health = endpoint.getHealth();
+                if (!health.isUp()) {
+                    listener.getLogger().println("Skipping ECX at " + endpoint.getUrl() + ", it is unreachable from the agent: " + health.getLastError());
+                    continue;
+                }
+                listener.getLogger().println("ECX at " + endpoint.getUrl() + " is reachable from the agent ("
+                        + ECXStatusPoller.getWatchedJobs(endpoint.getUrl()) + " jobs running from the agent, round trip " + health.getLatencyMillis() + " ms).");
+                return index;
+            }
+            throw new AbortException("None of the " + endpoints.size() + " ECX appliances of endpoint group " + name + " is reachable from the agent.");
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<ECXEndpointGroup> {
+
+        @Override
+        public String getDisplayName() {
+            return "ECX endpoint group";
+        }
+    }
+}
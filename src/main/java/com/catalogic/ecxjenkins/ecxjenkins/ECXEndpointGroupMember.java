@@ -0,0 +1,62 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.Secret;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * One appliance of an {@link ECXEndpointGroup} and the id its copy of the job has there.
+ */
+public class ECXEndpointGroupMember extends AbstractDescribableImpl<ECXEndpointGroupMember> {
+
+    private final String url;
+    private final String name;
+    private final Secret password;
+    private final String job;
+    private final boolean production;
+
+    @DataBoundConstructor
+    public ECXEndpointGroupMember(String url, String name, String password, String job, boolean production) {
+        this.url = url;
+        this.name = name;
+        this.password = Secret.fromString(password);
+        this.job = job;
+        this.production = production;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Secret getPassword() {
+        return password;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public boolean getProduction() {
+        return production;
+    }
+
+    public ECXEndpoint getEndpoint() {
+        return new ECXEndpoint(name, Secret.toString(password), url, production);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<ECXEndpointGroupMember> {
+
+        @Override
+        public String getDisplayName() {
+            return "ECX appliance";
+        }
+    }
+}
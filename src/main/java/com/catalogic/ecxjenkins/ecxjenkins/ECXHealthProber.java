@@ -0,0 +1,57 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXHttpClientPool;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+
+/**
+ * Probes the ECX endpoints builds used recently, see {@link ECXEndpointHealth}.
+ * <p>
+ * The default interval is shorter than {@link ECXHttpClientPool#DEFAULT_IDLE_TIMEOUT}, so each
+ * endpoint keeps a pooled connection and a logged in session between builds. The interval is
+ * read when Jenkins starts.
+ */
+@Extension
+public class ECXHealthProber extends AsyncPeriodicWork {
+
+    public final static int DEFAULT_INTERVAL = 20;
+
+    public ECXHealthProber() {
+        super("ECX endpoint health");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        int interval = getInterval();
+        return (interval > 0 ? interval : DEFAULT_INTERVAL) * 1000L;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (getInterval() <= 0) {
+            return;
+        }
+        ECXEndpointHealth.probeAll();
+        for (ECXEndpointHealth health : ECXEndpointHealth.getEndpoints()) {
+            if (health.isUp()) {
+                listener.getLogger().println(health.getUrl() + " is up, round trip " + health.getLatencyMillis() + " ms");
+            } else {
+                listener.getLogger().println(health.getUrl() + " is down: " + health.getLastError());
+            }
+        }
+    }
+
+    private static int getInterval() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return DEFAULT_INTERVAL;
+        }
+        ECXCDMBuilder.DescriptorImpl descriptor = jenkins.getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        return descriptor == null ? DEFAULT_INTERVAL : descriptor.getHealthProbeInterval();
+    }
+}
@@ -0,0 +1,138 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The order constraints between the ECX jobs of one {@link ECXCDMBuilder} step.
+ * <p>
+ * Each line of the step's dependency field reads {@code job: upstream, upstream}: the job is
+ * launched once all its upstream jobs completed. Jobs without a line only wait for a free slot.
+ */
+final class ECXJobGraph implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The upstream jobs of every job, the jobs in an order where upstream jobs come first.
+     */
+    private final LinkedHashMap<String, List<String>> upstream;
+
+    private ECXJobGraph(LinkedHashMap<String, List<String>> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * @param jobIds       the jobs of the step
+     * @param dependencies the step's dependency lines, may be empty
+     * @throws IllegalArgumentException if a line cannot be read, names a job that is not one of {@code jobIds}, or the lines form a cycle
+     */
+    static ECXJobGraph parse(List<String> jobIds, String dependencies) {
+        Map<String, List<String>> edges = new HashMap<>();
+        for (String jobId : jobIds) {
+            edges.put(jobId, new ArrayList<String>());
+        }
+
+        if (dependencies != null) {
+            for (String line : dependencies.split("\\r?\\n")) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Expected \"job: upstream job, ...\" but got \"" + line + "\"");
+                }
+                String jobId = line.substring(0, colon).trim();
+                List<String> ups = checkJob(edges, jobId, line);
+                for (String up : ECXCDMBuilder.parseJobIds(line.substring(colon + 1))) {
+                    checkJob(edges, up, line);
+                    if (up.equals(jobId)) {
+                        throw new IllegalArgumentException("Job " + jobId + " cannot depend on itself");
+                    }
+                    if (!ups.contains(up)) {
+                        ups.add(up);
+                    }
+                }
+            }
+        }
+
+        LinkedHashMap<String, List<String>> ordered = new LinkedHashMap<>();
+        Set<String> visiting = new HashSet<>();
+        for (String jobId : jobIds) {
+            visit(jobId, edges, visiting, ordered, new ArrayList<String>());
+        }
+        return new ECXJobGraph(ordered);
+    }
+
+    /**
+     * @return the jobs, each one after all of its upstream jobs
+     */
+    List<String> getJobIds() {
+        return new ArrayList<>(upstream.keySet());
+    }
+
+    /**
+     * @return the jobs that must complete before {@code jobId} is launched
+     */
+    List<String> getUpstream(String jobId) {
+        List<String> ups = upstream.get(jobId);
+        return ups == null ? Collections.<String>emptyList() : ups;
+    }
+
+    /**
+     * @return whether any job waits for another one
+     */
+    boolean hasDependencies() {
+        for (List<String> ups : upstream.values()) {
+            if (!ups.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> checkJob(Map<String, List<String>> edges, String jobId, String line) {
+        List<String> ups = edges.get(jobId);
+        if (ups == null) {
+            throw new IllegalArgumentException("Job " + jobId + " in \"" + line + "\" is not one of the step's jobs");
+        }
+        return ups;
+    }
+
+    /**
+     * Adds the job to {@code ordered} after its upstream jobs, depth first.
+     */
+    private static void visit(String jobId, Map<String, List<String>> edges, Set<String> visiting,
+                              LinkedHashMap<String, List<String>> ordered, List<String> path) {
+        if (ordered.containsKey(jobId)) {
+            return;
+        }
+        path.add(jobId);
+        if (!visiting.add(jobId)) {
+            List<String> cycle = path.subList(path.indexOf(jobId), path.size());
+            throw new IllegalArgumentException("The job dependencies form a cycle: " + joinCycle(cycle));
+        }
+        for (String up : edges.get(jobId)) {
+            visit(up, edges, visiting, ordered, path);
+        }
+        visiting.remove(jobId);
+        path.remove(path.size() - 1);
+        ordered.put(jobId, Collections.unmodifiableList(new ArrayList<>(edges.get(jobId))));
+    }
+
+    private static String joinCycle(List<String> cycle) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = cycle.size() - 1; i >= 0; i--) {
+            sb.append(cycle.get(i)).append(i > 0 ? " -> " : "");
+        }
+        return sb.toString();
+    }
+}
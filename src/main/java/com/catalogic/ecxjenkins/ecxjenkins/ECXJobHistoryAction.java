@@ -0,0 +1,145 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import hudson.model.Action;
+import hudson.model.Job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows how long the ECX jobs of a project took in their recent runs, with a trend chart on the
+ * project page. The durations come from {@link ECXJobHistory}, so runs started by other projects
+ * against the same job count too.
+ */
+public class ECXJobHistoryAction implements Action {
+
+    /**
+     * The number of runs drawn in the trend chart.
+     */
+    private final static int TREND_RUNS = 50;
+
+    private final static int TREND_WIDTH = 500;
+    private final static int TREND_HEIGHT = 200;
+
+    private final Job<?, ?> job;
+    private final List<String> urls;
+    private final List<String> jobIds;
+
+    /**
+     * @param urls the ECX server of each job, in the order of {@code jobIds}
+     */
+    ECXJobHistoryAction(Job<?, ?> job, List<String> urls, List<String> jobIds) {
+        this.job = job;
+        this.urls = new ArrayList<>(urls);
+        this.jobIds = new ArrayList<>(jobIds);
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    public List<History> getHistories() {
+        List<History> histories = new ArrayList<>();
+        for (int i = 0; i < jobIds.size(); i++) {
+            histories.add(new History(ECXJobHistory.get(urls.get(i), jobIds.get(i))));
+        }
+        return histories;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "ECX Job History";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "ecx-history";
+    }
+
+    /**
+     * The history of one ECX job in the form the pages need.
+     */
+    public static final class History {
+
+        private final ECXJobHistory history;
+        private final List<ECXJobHistory.Entry> entries;
+        private final ECXJobHistory.Estimate estimate;
+
+        History(ECXJobHistory history) {
+            this.history = history;
+            this.entries = history.getEntries();
+            this.estimate = history.estimate();
+        }
+
+        public String getUrl() {
+            return history.getUrl();
+        }
+
+        public String getJobId() {
+            return history.getJobId();
+        }
+
+        /**
+         * @return the percentiles, or null while there are too few runs
+         */
+        public ECXJobHistory.Estimate getEstimate() {
+            return estimate;
+        }
+
+        /**
+         * @return the kept runs, newest first
+         */
+        public List<ECXJobHistory.Entry> getEntries() {
+            List<ECXJobHistory.Entry> newestFirst = new ArrayList<>(entries);
+            Collections.reverse(newestFirst);
+            return newestFirst;
+        }
+
+        /**
+         * @return the longest duration in the trend chart in seconds, the top of its scale
+         */
+        public long getTrendMaxSeconds() {
+            long max = 0;
+            for (ECXJobHistory.Entry entry : trendEntries()) {
+                max = Math.max(max, entry.getDurationMillis());
+            }
+            return Math.max(1, (max + 999) / 1000);
+        }
+
+        /**
+         * @return the points of the duration trend, oldest run on the left, as an SVG polyline
+         */
+        public String getTrendPoints() {
+            List<ECXJobHistory.Entry> trend = trendEntries();
+            double scale = TREND_HEIGHT / (getTrendMaxSeconds() * 1000.0);
+            double step = trend.size() > 1 ? TREND_WIDTH / (double) (trend.size() - 1) : 0;
+
+            StringBuilder points = new StringBuilder();
+            for (int i = 0; i < trend.size(); i++) {
+                if (i > 0) {
+                    points.append(' ');
+                }
+                points.append(Math.round(i * step)).append(',').append(Math.round(TREND_HEIGHT - trend.get(i).getDurationMillis() * scale));
+            }
+            return points.toString();
+        }
+
+        /**
+         * @return the height of a duration in the trend chart, for the percentile lines
+         */
+        public long getTrendY(long durationMillis) {
+            return Math.round(TREND_HEIGHT - durationMillis * TREND_HEIGHT / (getTrendMaxSeconds() * 1000.0));
+        }
+
+        private List<ECXJobHistory.Entry> trendEntries() {
+            return entries.subList(Math.max(0, entries.size() - TREND_RUNS), entries.size());
+        }
+    }
+}
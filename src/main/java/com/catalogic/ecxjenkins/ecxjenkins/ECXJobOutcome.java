@@ -0,0 +1,110 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXJobState;
+
+import java.io.Serializable;
+
+/**
+ * The result of launching and monitoring one ECX job.
+ */
+final class ECXJobOutcome implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String jobId;
+    private final String status;
+    private final boolean timedOut;
+    private final String error;
+    private final long durationMillis;
+    private final String skippedFor;
+    private final boolean watchedFromLaunch;
+
+    private ECXJobOutcome(String jobId, String status, boolean timedOut, String error, long durationMillis, String skippedFor,
+                          boolean watchedFromLaunch) {
+        this.jobId = jobId;
+        this.status = status;
+        this.timedOut = timedOut;
+        this.error = error;
+        this.durationMillis = durationMillis;
+        this.skippedFor = skippedFor;
+        this.watchedFromLaunch = watchedFromLaunch;
+    }
+
+    /**
+     * @param watchedFromLaunch whether this build launched the run and watched it until it ended,
+     *                          rather than attaching to a run launched elsewhere or earlier
+     */
+    static ECXJobOutcome finished(String jobId, String status, long durationMillis, boolean watchedFromLaunch) {
+        return new ECXJobOutcome(jobId, status, false, null, durationMillis, null, watchedFromLaunch);
+    }
+
+    static ECXJobOutcome timedOut(String jobId, String status, long durationMillis) {
+        return new ECXJobOutcome(jobId, status, true, null, durationMillis, null, false);
+    }
+
+    static ECXJobOutcome error(String jobId, String error) {
+        return new ECXJobOutcome(jobId, null, false, error, -1, null, false);
+    }
+
+    /**
+     * @param upstreamJobId the job it depends on that did not complete
+     */
+    static ECXJobOutcome skipped(String jobId, String upstreamJobId) {
+        return new ECXJobOutcome(jobId, null, false, null, -1, upstreamJobId, false);
+    }
+
+    String getJobId() {
+        return jobId;
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the time this build watched the job, from launching or attaching to it to seeing it
+     * end or time out, or -1 if it did not run or ended before the build attached
+     */
+    long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return whether the duration is the whole run's, so it may go into the job history and metrics
+     */
+    boolean isWatchedFromLaunch() {
+        return watchedFromLaunch;
+    }
+
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    boolean isFailed() {
+        return timedOut || error != null || skippedFor != null || ECXJobState.FAILED.equals(status);
+    }
+
+    boolean isSkipped() {
+        return skippedFor != null;
+    }
+
+    boolean isPartial() {
+        return ECXJobState.PARTIAL.equals(status);
+    }
+
+    String getMessage() {
+        if (error != null) {
+            return "ECX " + jobId + " Failed! " + error;
+        }
+        if (skippedFor != null) {
+            return "ECX job " + jobId + " was not launched, it depends on job " + skippedFor + ", which did not complete.";
+        }
+        if (timedOut) {
+            return "ECX CDM Build step for job " + jobId + " timed out waiting for the ECX job to complete! You may want to check ECX to see how long the job ran and potentially increase the configuration timeout.";
+        }
+        if (ECXJobState.FAILED.equals(status)) {
+            return "ECX " + jobId + " Failed!";
+        }
+        return "ECX job " + jobId + ": " + status;
+    }
+}
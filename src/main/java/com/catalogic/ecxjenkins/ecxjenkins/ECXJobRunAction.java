@@ -0,0 +1,289 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXJobLogTail;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.RunAction2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The ECX job runs a build launched, saved with the build so they outlive a controller restart.
+ * <p>
+ * A build killed by a restart leaves runs that were never seen to end. The next build of the
+ * project that would launch the same job on the same appliance finds them through
+ * {@link #findResumes} and reattaches instead of launching the job again. Runs a build stopped
+ * following for any other reason, a timeout, an error or an abort, are marked abandoned and
+ * never reattached to.
+ */
+public class ECXJobRunAction extends InvisibleAction implements RunAction2 {
+
+    private static final Logger logger = Logger.getLogger(ECXJobRunAction.class.getName());
+
+    /**
+     * How many earlier builds are searched for runs to reattach to.
+     */
+    private final static int MAX_BUILDS_SEARCHED = 10;
+
+    private transient Run<?, ?> run;
+
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * @return the action of the build, added to it first if needed
+     */
+    static ECXJobRunAction of(Run<?, ?> run) {
+        synchronized (run) {
+            ECXJobRunAction action = run.getAction(ECXJobRunAction.class);
+            if (action == null) {
+                action = new ECXJobRunAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    /**
+     * Finds the runs of the jobs that earlier builds launched on the endpoint and did not see end
+     * because a restart cut them short, takes them over into {@code build} and marks them taken in
+     * the earlier builds.
+     *
+     * @param maxAgeMillis how long ago a run may have been launched, runs the step would have given up on by now are left alone
+     * @return the runs to reattach to, by job id
+     */
+    static Map<String, ECXJobRunner.Resume> findResumes(Run<?, ?> build, ECXEndpoint endpoint, List<String> jobIds, long maxAgeMillis,
+                                                         TaskListener listener) {
+        Map<String, ECXJobRunner.Resume> resumes = new HashMap<>();
+        long launchedAfter = System.currentTimeMillis() - maxAgeMillis;
+
+        Run<?, ?> earlier = build.getPreviousBuild();
+        for (int i = 0; earlier != null && i < MAX_BUILDS_SEARCHED && resumes.size() < jobIds.size(); i++, earlier = earlier.getPreviousBuild()) {
+            ECXJobRunAction action = earlier.getAction(ECXJobRunAction.class);
+            if (action == null || earlier.isBuilding()) {
+                continue;
+            }
+            for (Record record : action.takeUnfinished(endpoint, jobIds, resumes.keySet(), launchedAfter, build.getExternalizableId())) {
+                listener.getLogger().println("ECX job " + record.jobId + " was launched by " + earlier.getFullDisplayName()
+                        + ", which did not see it end.");
+                resumes.put(record.jobId, new ECXJobRunner.Resume(record.sessionId, record.previousSessionId, record.launchedAt, record.logTail));
+                of(build).add(record.copy());
+            }
+        }
+        return resumes;
+    }
+
+    /**
+     * @return a receiver that records the runs launched on the endpoint in this action
+     */
+    ECXJobRunner.Progress recorder(final ECXEndpoint endpoint) {
+        return new ECXJobRunner.Progress() {
+            @Override
+            public void launched(String jobId, long launchedAt, String previousSessionId) {
+                Record record = new Record(endpoint.getUrl(), endpoint.getUser(), jobId);
+                record.launchedAt = launchedAt;
+                record.previousSessionId = previousSessionId;
+                add(record);
+            }
+
+            @Override
+            public void session(String jobId, String sessionId) {
+                synchronized (ECXJobRunAction.this) {
+                    Record record = find(endpoint, jobId);
+                    if (record != null) {
+                        record.sessionId = sessionId;
+                    }
+                }
+                save();
+            }
+
+            @Override
+            public void status(String jobId, String status, ECXJobLogTail logTail) {
+                synchronized (ECXJobRunAction.this) {
+                    Record record = find(endpoint, jobId);
+                    if (record != null) {
+                        record.lastStatus = status;
+                        record.logTail = logTail;
+                    }
+                }
+                save();
+            }
+
+            @Override
+            public void ended(String jobId, String status) {
+                synchronized (ECXJobRunAction.this) {
+                    Record record = find(endpoint, jobId);
+                    if (record != null) {
+                        record.lastStatus = status;
+                        record.ended = true;
+                        record.logTail = null;
+                    }
+                }
+                save();
+            }
+
+            @Override
+            public void abandoned(String jobId, String reason) {
+                if (ECXPluginLifecycle.isShuttingDown()) {
+                    // the restart interrupted the build, the next build may reattach
+                    return;
+                }
+                synchronized (ECXJobRunAction.this) {
+                    Record record = find(endpoint, jobId);
+                    if (record != null && !record.ended) {
+                        record.abandoned = reason;
+                        record.logTail = null;
+                    }
+                }
+                save();
+            }
+        };
+    }
+
+    public synchronized List<Record> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    private void add(Record record) {
+        synchronized (this) {
+            records.add(record);
+        }
+        save();
+    }
+
+    /**
+     * @return the latest record of the job on the endpoint. Must hold the lock.
+     */
+    private Record find(ECXEndpoint endpoint, String jobId) {
+        for (int i = records.size() - 1; i >= 0; i--) {
+            Record record = records.get(i);
+            if (record.matches(endpoint, jobId)) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private List<Record> takeUnfinished(ECXEndpoint endpoint, List<String> jobIds, Set<String> taken, long launchedAfter, String takenBy) {
+        List<Record> unfinished = new ArrayList<>();
+        synchronized (this) {
+            for (Record record : records) {
+                if (!record.ended && record.abandoned == null && record.resumedBy == null
+                        && record.launchedAt >= launchedAfter && jobIds.contains(record.jobId)
+                        && !taken.contains(record.jobId) && record.matches(endpoint, record.jobId)) {
+                    record.resumedBy = takenBy;
+                    unfinished.add(record);
+                }
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            save();
+        }
+        return unfinished;
+    }
+
+    private void save() {
+        if (run == null) {
+            return;
+        }
+        try {
+            run.save();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save the ECX job runs of " + run.getFullDisplayName(), e);
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    /**
+     * One launched job run. The password is not kept; the reattaching build brings its own.
+     */
+    public static final class Record {
+
+        private final String url;
+        private final String user;
+        private final String jobId;
+        private String sessionId;
+        private String previousSessionId;
+        private long launchedAt;
+        private String lastStatus;
+        private boolean ended;
+        private String abandoned;
+        private ECXJobLogTail logTail;
+        private String resumedBy;
+
+        private Record(String url, String user, String jobId) {
+            this.url = url;
+            this.user = user;
+            this.jobId = jobId;
+        }
+
+        private Record copy() {
+            Record copy = new Record(url, user, jobId);
+            copy.sessionId = sessionId;
+            copy.previousSessionId = previousSessionId;
+            copy.launchedAt = launchedAt;
+            copy.lastStatus = lastStatus;
+            copy.logTail = logTail;
+            return copy;
+        }
+
+        private boolean matches(ECXEndpoint endpoint, String jobId) {
+            return this.jobId.equals(jobId) && url.equals(endpoint.getUrl()) && (user == null ? endpoint.getUser() == null : user.equals(endpoint.getUser()));
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public long getLaunchedAt() {
+            return launchedAt;
+        }
+
+        public String getLastStatus() {
+            return lastStatus;
+        }
+
+        public boolean isEnded() {
+            return ended;
+        }
+
+        /**
+         * @return why the build stopped following the run before it ended, or null
+         */
+        public String getAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * @return the build that reattached to this run, or null
+         */
+        public String getResumedBy() {
+            return resumedBy;
+        }
+    }
+}
@@ -0,0 +1,653 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXEndpointGuard;
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import com.catalogic.ecx.sdk.ECXJobLogTail;
+import com.catalogic.ecx.sdk.ECXJobSession;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.ECXJobState;
+import com.catalogic.ecx.sdk.ECXJobWatch;
+import com.catalogic.ecx.sdk.ECXLogEntry;
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import com.catalogic.ecx.sdk.ECXSdk;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import com.catalogic.ecx.sdk.EtaPollSchedule;
+import com.catalogic.ecx.sdk.PollSchedule;
+import hudson.model.TaskListener;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Launches ECX jobs for {@link ECXCDMBuilder} and monitors them until they end.
+ * <p>
+ * Holds a copy of the step's settings and no Jenkins model objects, so it can be sent to an agent
+ * by {@link ECXAgentCallable} and run there.
+ */
+final class ECXJobRunner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final static long LOG_TAIL_INTERVAL = 5 * 1000;
+
+    /**
+     * The shortest wait a timeout derived from the job history may give.
+     */
+    final static long MIN_AUTO_WAIT = 60 * 1000L;
+
+    /**
+     * How far apart the launch and the start of the session ECX created for it may be, allowing
+     * for the clocks of Jenkins and ECX to differ.
+     */
+    final static long SESSION_START_WINDOW = 5 * 60 * 1000L;
+
+    private final ECXEndpoint endpoint;
+    private final PollSchedule schedule;
+    private final long maxWaitMillis;
+    private final ECXLaunchPolicy launchPolicy;
+    private final boolean tailJobLog;
+    private final boolean callbacksEnabled;
+    private final Progress progress;
+    private Map<String, ECXJobHistory.Estimate> estimates = Collections.emptyMap();
+    private double timeoutFactor;
+    private ECXJobGraph graph;
+    private boolean partialCompletes;
+
+    /**
+     * @param callbacksEnabled whether to register with {@link ECXCallbackAction}, which only works on the controller
+     * @param progress         told about launches and status changes so a later build can reattach, may be null
+     */
+    ECXJobRunner(ECXEndpoint endpoint, PollSchedule schedule, int maxWaitTime, ECXLaunchPolicy launchPolicy,
+                 boolean tailJobLog, boolean callbacksEnabled, Progress progress) {
+        this.endpoint = endpoint;
+        this.schedule = schedule;
+        this.maxWaitMillis = maxWaitTime * 1000L;
+        this.launchPolicy = launchPolicy;
+        this.tailJobLog = tailJobLog;
+        this.callbacksEnabled = callbacksEnabled;
+        this.progress = progress;
+    }
+
+    ECXEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Polls each job around the time its earlier runs ended, see {@link EtaPollSchedule}.
+     *
+     * @param estimates     the expected durations, by job id; jobs without one use the step's schedule and wait time
+     * @param timeoutFactor if above 0, a job with an estimate is waited for {@code factor} times its p99 duration instead of the step's wait time
+     */
+    void useHistory(Map<String, ECXJobHistory.Estimate> estimates, double timeoutFactor) {
+        this.estimates = new HashMap<>(estimates);
+        this.timeoutFactor = timeoutFactor;
+    }
+
+    /**
+     * Launches each job only once the jobs it depends on completed, see {@link #runGraph}.
+     *
+     * @param partialCompletes whether a job ending {@link ECXJobState#PARTIAL} lets the jobs that depend on it run
+     */
+    void useGraph(ECXJobGraph graph, boolean partialCompletes) {
+        this.graph = graph;
+        this.partialCompletes = partialCompletes;
+    }
+
+    /**
+     * Launches the jobs, at most {@code maxConcurrentJobs} at a time, and waits for all of them.
+     *
+     * @param resumes runs launched by an earlier build to reattach to instead of launching, by job id
+     */
+    List<ECXJobOutcome> runJobs(List<String> jobIds, final Map<String, Resume> resumes, int maxConcurrentJobs,
+                                final TaskListener listener, final ECXRequestStats requestStats) throws InterruptedException {
+        final boolean prefix = jobIds.size() > 1;
+        int threads = Math.min(jobIds.size(), Math.max(1, maxConcurrentJobs));
+
+        if (graph != null && graph.hasDependencies()) {
+            return runGraph(jobIds, resumes, threads, listener, requestStats);
+        }
+        if (threads == 1) {
+            List<ECXJobOutcome> outcomes = new ArrayList<>();
+            for (String jobId : jobIds) {
+                outcomes.add(runJob(jobId, resumes.get(jobId), listener, prefix, requestStats));
+            }
+            return outcomes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ECXJobOutcome>> futures = new ArrayList<>();
+            for (final String jobId : jobIds) {
+                futures.add(executor.submit(new Callable<ECXJobOutcome>() {
+                    @Override
+                    public ECXJobOutcome call() throws Exception {
+                        return runJob(jobId, resumes.get(jobId), listener, prefix, requestStats);
+                    }
+                }));
+            }
+
+            List<ECXJobOutcome> outcomes = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    outcomes.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    outcomes.add(ECXJobOutcome.error(jobIds.get(i), String.valueOf(e.getCause())));
+                }
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Launches every job as soon as all jobs it depends on completed and one of the {@code threads}
+     * slots is free, so independent branches run side by side. The jobs depending on a job that did
+     * not complete are not launched. A job an earlier build launched is reattached to right away,
+     * its upstream jobs had completed then.
+     *
+     * @return the outcomes in the order of {@code jobIds}
+     */
+    private List<ECXJobOutcome> runGraph(List<String> jobIds, final Map<String, Resume> resumes, int threads,
+                                         final TaskListener listener, final ECXRequestStats requestStats) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        Map<String, ECXJobOutcome> outcomes = new HashMap<>();
+        List<String> pending = graph.getJobIds();
+        int running = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<ECXJobOutcome> completed = new ExecutorCompletionService<>(executor);
+        Map<Future<ECXJobOutcome>, String> submitted = new HashMap<>();
+        try {
+            while (true) {
+                // upstream jobs come first, so a skip reaches the whole downstream branch in one pass
+                for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                    final String jobId = it.next();
+                    String failedUpstream = null;
+                    boolean ready = true;
+                    for (String up : graph.getUpstream(jobId)) {
+                        ECXJobOutcome outcome = outcomes.get(up);
+                        if (outcome == null) {
+                            ready = false;
+                        } else if (!completes(outcome)) {
+                            failedUpstream = up;
+                            break;
+                        }
+                    }
+
+                    if (failedUpstream != null && !resumes.containsKey(jobId)) {
+                        ECXJobOutcome skipped = ECXJobOutcome.skipped(jobId, failedUpstream);
+                        listener.getLogger().println("[" + jobId + "] " + skipped.getMessage());
+                        outcomes.put(jobId, skipped);
+                        it.remove();
+                    } else if (ready || resumes.containsKey(jobId)) {
+                        submitted.put(completed.submit(new Callable<ECXJobOutcome>() {
+                            @Override
+                            public ECXJobOutcome call() throws Exception {
+                                try {
+                                    return runJob(jobId, resumes.get(jobId), listener, true, requestStats);
+                                } catch (RuntimeException e) {
+                                    return ECXJobOutcome.error(jobId, String.valueOf(e));
+                                }
+                            }
+                        }), jobId);
+                        running++;
+                        it.remove();
+                    }
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                Future<ECXJobOutcome> done = completed.take();
+                try {
+                    ECXJobOutcome outcome = done.get();
+                    outcomes.put(outcome.getJobId(), outcome);
+                } catch (ExecutionException e) {
+                    // the job counts as failed, so the next pass skips the jobs depending on it
+                    String jobId = submitted.get(done);
+                    listener.getLogger().println("[" + jobId + "] Failed: " + e.getCause());
+                    outcomes.put(jobId, ECXJobOutcome.error(jobId, String.valueOf(e.getCause())));
+                }
+                running--;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long serial = 0;
+        List<ECXJobOutcome> ordered = new ArrayList<>();
+        for (String jobId : jobIds) {
+            ECXJobOutcome outcome = outcomes.get(jobId);
+            serial += Math.max(0, outcome.getDurationMillis());
+            ordered.add(outcome);
+        }
+        listener.getLogger().println("Ran the ECX job graph in " + (System.currentTimeMillis() - start) / 1000
+                + " s, the jobs took " + serial / 1000 + " s together.");
+        return ordered;
+    }
+
+    private boolean completes(ECXJobOutcome outcome) {
+        return !outcome.isFailed() && (partialCompletes || !outcome.isPartial());
+    }
+
+    /**
+     * Launches one ECX job, or reattaches to the run recorded in {@code resume}, and monitors it
+     * until it ends or times out. The job holds a slot of the appliance, see {@link ECXJobSlots},
+     * while it is followed.
+     */
+    private ECXJobOutcome runJob(String jobId, Resume resume, TaskListener listener, boolean prefix, ECXRequestStats requestStats) throws InterruptedException {
+        ECXJobSlots.Lease slot = ECXJobSlots.lease(endpoint.getUrl());
+        try {
+            return runJob(jobId, resume, listener, prefix, requestStats, slot);
+        } finally {
+            slot.release();
+        }
+    }
+
+    private ECXJobOutcome runJob(String jobId, Resume resume, TaskListener listener, boolean prefix, ECXRequestStats requestStats,
+                                 ECXJobSlots.Lease slot) throws InterruptedException {
+        String tag = prefix ? "[" + jobId + "] " : "";
+
+        ECXSdk ecx;
+        ECXJobLogTail logTail = null;
+        boolean attached = false;
+        String previousSessionId = null;
+        String sessionId = null;
+        long launchedAt;
+        long watchedSince;
+        try {
+            ecx = new ECXSdk(endpoint);
+            ecx.setRequestStats(requestStats);
+            ecx.connect();
+
+            boolean resuming = resume != null && isSameRun(ecx, jobId, resume);
+            if (resume != null && !resuming) {
+                listener.getLogger().println(tag + "The run of ECX job " + jobId + " launched by an earlier build is no longer its latest session, launching the job.");
+                abandon(jobId, "Another session of the job started.");
+            }
+            if (resuming) {
+                sessionId = resume.sessionId;
+                if (!ECXJobState.ACTIVE.equals(ecx.getJobState(jobId))) {
+                    listener.getLogger().println(tag + "ECX job " + jobId + " launched by an earlier build ended while it was not monitored.");
+                    return finish(ecx, jobId, null, listener, tag, -1, false);
+                }
+                listener.getLogger().println(tag + "Reattaching to ECX job " + jobId + " launched by an earlier build, session " + sessionId + ".");
+                attached = true;
+                slot.claim();
+                logTail = tailJobLog ? resume.logTail(jobId) : null;
+                launchedAt = resume.launchedAt;
+                watchedSince = System.currentTimeMillis();
+            } else {
+                if (launchPolicy != ECXLaunchPolicy.FORCE && ECXJobState.ACTIVE.equals(ecx.getJobState(jobId))) {
+                    switch (launchPolicy) {
+                        case FAIL:
+                            listener.getLogger().println(tag + "ECX job " + jobId + " is already running, not starting it again.");
+                            return ECXJobOutcome.error(jobId, "The job is already running.");
+                        case ATTACH:
+                            listener.getLogger().println(tag + "ECX job " + jobId + " is already running, monitoring the running job instead of starting it again.");
+                            attached = true;
+                            break;
+                        default:
+                            listener.getLogger().println(tag + "ECX job " + jobId + " is already running, waiting for it to end before starting it again.");
+                            long waitingSince = System.currentTimeMillis();
+                            if (!awaitRunningJob(jobId, waitingSince + maxWaitMillis, requestStats)) {
+                                return ECXJobOutcome.timedOut(jobId, ECXJobState.ACTIVE, System.currentTimeMillis() - waitingSince);
+                            }
+                    }
+                }
+
+                if (attached) {
+                    slot.claim();
+                    // without begin() the tail follows the latest session, i.e. the running one
+                    logTail = tailJobLog ? new ECXJobLogTail(jobId, ECXJobLogTail.DEFAULT_PAGE_SIZE) : null;
+                } else {
+                    if (!awaitSlot(slot, jobId, System.currentTimeMillis() + maxWaitMillis, listener, tag)) {
+                        listener.getLogger().println(tag + "No slot of ECX appliance " + endpoint.getUrl() + " freed up within "
+                                + maxWaitMillis / 1000 + " s, not launching job " + jobId + ".");
+                        return ECXJobOutcome.error(jobId, "No slot of the ECX appliance freed up within the maximum wait time.");
+                    }
+                    if (progress != null || tailJobLog) {
+                        previousSessionId = ecx.getLatestJobSessionId(jobId);
+                        logTail = beginLogTail(ecx, jobId, listener, tag);
+                    }
+                }
+                launchedAt = System.currentTimeMillis();
+                watchedSince = launchedAt;
+                if (!attached) {
+                    ecx.runJob(jobId);
+                }
+                if (progress != null) {
+                    progress.launched(jobId, launchedAt, previousSessionId);
+                }
+            }
+        } catch (RuntimeException e) {
+            abandon(jobId, "Failed to launch: " + e.getMessage());
+            if (!prefix) {
+                throw e;
+            }
+            listener.getLogger().println(tag + "Failed to launch: " + e.getMessage());
+            return ECXJobOutcome.error(jobId, e.getMessage());
+        }
+
+        String msg = "";
+        String lastMessage = "";
+        String pollProblem = null;
+
+        Iterator<String> launchMessages = ecx.getStatus();
+        while (launchMessages.hasNext()) {
+            lastMessage = launchMessages.next();
+            launchMessages.remove();
+            listener.getLogger().println(tag + lastMessage);
+        }
+
+        ECXJobHistory.Estimate estimate = estimates.get(jobId);
+        long deadline = System.currentTimeMillis() + getMaxWaitMillis(estimate, maxWaitMillis, timeoutFactor, listener, tag, jobId);
+        ECXJobWatch watch = ECXStatusPoller.watch(endpoint, jobId, estimate == null ? schedule : new EtaPollSchedule(schedule, launchedAt, estimate), null);
+        String callbackToken = registerCallback(watch, listener, tag);
+
+        try {
+            while (!ECXJobState.isTerminal(msg)) {
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                msg = watch.awaitChange(lastMessage, logTail == null ? remaining : Math.min(remaining, LOG_TAIL_INTERVAL));
+
+                logTail = printLogTail(logTail, ecx, listener, tag);
+                if (watch.getPollProblem() != null && !watch.getPollProblem().equals(pollProblem)) {
+                    listener.getLogger().println(tag + "ECX is not answering, still waiting for the job: " + watch.getPollProblem());
+                }
+                pollProblem = watch.getPollProblem();
+                if (sessionId == null && progress != null) {
+                    sessionId = findSessionId(ecx, jobId, logTail, previousSessionId, msg);
+                    if (sessionId != null) {
+                        progress.session(jobId, sessionId);
+                    }
+                }
+                if (!StringUtils.isEmpty(msg) && msg.compareTo(lastMessage) != 0) {
+
+                    listener.getLogger().println(tag + msg);
+                    if (progress != null) {
+                        progress.status(jobId, msg, logTail == null ? null : logTail.copy());
+                    }
+                }
+                lastMessage = msg;
+            }
+        } catch (RuntimeException e) {
+            abandon(jobId, "Failed to monitor: " + e.getMessage());
+            if (!prefix) {
+                throw e;
+            }
+            listener.getLogger().println(tag + "Failed to monitor: " + e.getMessage());
+            return ECXJobOutcome.error(jobId, e.getMessage());
+        } catch (InterruptedException e) {
+            abandon(jobId, "The build was interrupted.");
+            throw e;
+        } finally {
+            ECXCallbackAction.unregister(callbackToken);
+            watch.cancel();
+            if (requestStats != null) {
+                requestStats.add(watch.summarizePolls());
+            }
+        }
+
+        long duration = System.currentTimeMillis() - watchedSince;
+        if (ECXJobState.ACTIVE.equals(msg)) {
+            abandon(jobId, "Timed out.");
+            return ECXJobOutcome.timedOut(jobId, msg, duration);
+        }
+        return finish(ecx, jobId, logTail, listener, tag, duration, !attached);
+    }
+
+    /**
+     * @param estimate      the job's expected duration, may be null
+     * @param timeoutFactor the multiple of the p99 duration to wait for, 0 to keep the step's wait time
+     * @return the step's wait time, or the one derived from the job's history if that is enabled and known
+     */
+    static long getMaxWaitMillis(ECXJobHistory.Estimate estimate, long maxWaitMillis, double timeoutFactor,
+                                 TaskListener listener, String tag, String jobId) {
+        if (estimate == null) {
+            return maxWaitMillis;
+        }
+        String expected = "ECX job " + jobId + " usually takes " + estimate.getP50() / 1000 + " s and at most " + estimate.getP99() / 1000
+                + " s in 99% of its last " + estimate.getRuns() + " runs";
+        if (timeoutFactor <= 0) {
+            listener.getLogger().println(tag + expected + ".");
+            return maxWaitMillis;
+        }
+        long wait = Math.max(MIN_AUTO_WAIT, estimate.getTimeout(timeoutFactor));
+        listener.getLogger().println(tag + expected + ", waiting up to " + wait / 1000 + " s for it.");
+        return wait;
+    }
+
+    /**
+     * @param watchedFromLaunch whether this build launched the run, see {@link ECXJobOutcome#isWatchedFromLaunch()}
+     */
+    private ECXJobOutcome finish(ECXSdk ecx, String jobId, ECXJobLogTail logTail, TaskListener listener, String tag, long duration,
+                                 boolean watchedFromLaunch) {
+        printLogTail(logTail, ecx, listener, tag);
+        String msg = getECXJobInfo(ecx, jobId);
+        listener.getLogger().println(tag + msg);
+        if (progress != null) {
+            progress.ended(jobId, msg);
+        }
+
+        return ECXJobOutcome.finished(jobId, msg, duration, watchedFromLaunch);
+    }
+
+    /**
+     * Takes a slot of the appliance for launching the job, waiting for one until {@code deadline}
+     * if the appliance runs as many jobs of this Jenkins as the global limit allows.
+     *
+     * @return whether the slot is held, false if none freed up in time
+     */
+    private boolean awaitSlot(ECXJobSlots.Lease slot, String jobId, long deadline, TaskListener listener, String tag) throws InterruptedException {
+        if (slot.tryAcquire()) {
+            return true;
+        }
+        listener.getLogger().println(tag + "ECX appliance " + endpoint.getUrl() + " already runs " + ECXJobSlots.getMaxJobs()
+                + " jobs of this Jenkins, waiting for one to end before launching job " + jobId + ".");
+        return slot.acquire(deadline);
+    }
+
+    /**
+     * Tells {@link #progress} that this build stops following the run, so no later build reattaches to it.
+     */
+    private void abandon(String jobId, String reason) {
+        if (progress != null) {
+            progress.abandoned(jobId, reason);
+        }
+    }
+
+    /**
+     * @return whether the job's latest session is still the one recorded before the restart
+     */
+    static boolean isSameRun(ECXSdk ecx, String jobId, Resume resume) {
+        ECXJobSession latest = ecx.getLatestJobSession(jobId);
+        if (latest == null) {
+            return false;
+        }
+        if (resume.sessionId != null) {
+            return resume.sessionId.equals(latest.getId());
+        }
+        // the build ended before it saw the session; only a new session started around the launch is its run
+        return !latest.getId().equals(resume.previousSessionId) && latest.getStart() > 0
+                && Math.abs(latest.getStart() - resume.launchedAt) <= SESSION_START_WINDOW;
+    }
+
+    /**
+     * @return the session of the run launched by this build once ECX created it, or null
+     */
+    private static String findSessionId(ECXSdk ecx, String jobId, ECXJobLogTail logTail, String previousSessionId, String status) {
+        if (logTail != null) {
+            return logTail.getSessionId();
+        }
+        if (!ECXJobState.ACTIVE.equals(status) && !ECXJobState.isTerminal(status)) {
+            return null;
+        }
+        try {
+            String latest = ecx.getLatestJobSessionId(jobId);
+            return latest == null || latest.equals(previousSessionId) ? null : latest;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lets ECX wake the watch up through {@link ECXCallbackAction} if callbacks are enabled.
+     *
+     * @return the callback token, or null
+     */
+    private String registerCallback(ECXJobWatch watch, TaskListener listener, String tag) {
+        if (!callbacksEnabled) {
+            return null;
+        }
+        String token = ECXCallbackAction.register(watch);
+        listener.getLogger().println(tag + "ECX can report the end of the job with an HTTP POST to " + ECXCallbackAction.getCallbackUrl(token));
+        return token;
+    }
+
+    /**
+     * Waits for a run of the job started elsewhere to end.
+     *
+     * @return false if it was still running at the deadline
+     */
+    private boolean awaitRunningJob(String jobId, long deadline, ECXRequestStats requestStats) throws InterruptedException {
+        String state = ECXJobState.ACTIVE;
+        ECXJobWatch watch = ECXStatusPoller.watch(endpoint, jobId, schedule, null);
+        try {
+            long remaining;
+            while (ECXJobState.ACTIVE.equals(state) && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                state = watch.awaitChange(ECXJobState.ACTIVE, remaining);
+            }
+        } finally {
+            watch.cancel();
+            if (requestStats != null) {
+                requestStats.add(watch.summarizePolls());
+            }
+        }
+        return !ECXJobState.ACTIVE.equals(state);
+    }
+
+    /**
+     * @return a tail on the job's session log, or null if tailing is off or ECX could not be asked
+     */
+    private ECXJobLogTail beginLogTail(ECXSdk ecx, String jobId, TaskListener listener, String tag) {
+        if (!tailJobLog) {
+            return null;
+        }
+        ECXJobLogTail logTail = new ECXJobLogTail(jobId, ECXJobLogTail.DEFAULT_PAGE_SIZE);
+        try {
+            logTail.begin(ecx);
+            return logTail;
+        } catch (RuntimeException e) {
+            listener.getLogger().println(tag + "Not showing the ECX job log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Prints the log entries that are new since the last call. Transient failures are skipped,
+     * other failures stop the tailing, never the build.
+     *
+     * @return the tail, or null once it failed
+     */
+    static ECXJobLogTail printLogTail(ECXJobLogTail logTail, ECXSdk ecx, TaskListener listener, String tag) {
+        if (logTail == null) {
+            return null;
+        }
+        try {
+            for (ECXLogEntry entry : logTail.poll(ecx)) {
+                listener.getLogger().println(tag + entry);
+            }
+            return logTail;
+        } catch (RuntimeException e) {
+            if (ECXEndpointGuard.isTransient(e)) {
+                return logTail;
+            }
+            listener.getLogger().println(tag + "Stopped showing the ECX job log: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the outcome of the job's latest run
+     */
+    static String getECXJobInfo(ECXSdk ecx, String job) {
+        return ecx.getJobInfo(job).getLastSessionStatus();
+    }
+
+    /**
+     * Receives what a later build needs to reattach to a job run. Calls may come over the remoting
+     * channel from an agent.
+     */
+    public interface Progress {
+
+        void launched(String jobId, long launchedAt, String previousSessionId);
+
+        void session(String jobId, String sessionId);
+
+        /**
+         * @param logTail a copy of the log tail's position, or null if the log is not shown
+         */
+        void status(String jobId, String status, ECXJobLogTail logTail);
+
+        void ended(String jobId, String status);
+
+        /**
+         * The build stopped following the run before it ended: it timed out, could not be
+         * monitored, or the build was interrupted.
+         */
+        void abandoned(String jobId, String reason);
+    }
+
+    /**
+     * A job run launched by an earlier build that did not see it end.
+     */
+    static final class Resume implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String sessionId;
+        private final String previousSessionId;
+        private final long launchedAt;
+        private final ECXJobLogTail logTail;
+
+        Resume(String sessionId, String previousSessionId, long launchedAt, ECXJobLogTail logTail) {
+            this.sessionId = sessionId;
+            this.previousSessionId = previousSessionId;
+            this.launchedAt = launchedAt;
+            this.logTail = logTail;
+        }
+
+        /**
+         * @return the saved tail, so the log continues where the earlier build stopped, or a new one on the session
+         */
+        private ECXJobLogTail logTail(String jobId) {
+            if (logTail != null) {
+                return logTail.copy();
+            }
+            ECXJobLogTail tail = new ECXJobLogTail(jobId, ECXJobLogTail.DEFAULT_PAGE_SIZE);
+            if (sessionId != null) {
+                tail.follow(sessionId);
+            }
+            return tail;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+/**
+ * What to do when the ECX job is already running when the build wants to launch it.
+ */
+public enum ECXLaunchPolicy {
+
+    FORCE("Start another run anyway"),
+    ATTACH("Monitor the running job and report its result"),
+    QUEUE("Wait for the running job to end, then start a new run"),
+    FAIL("Fail without starting the job");
+
+    private final String displayName;
+
+    ECXLaunchPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
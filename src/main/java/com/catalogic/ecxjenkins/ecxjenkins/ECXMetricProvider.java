@@ -0,0 +1,160 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXJobState;
+import com.catalogic.ecx.sdk.ECXMetrics;
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes {@link ECXMetrics} through the Metrics plugin when it is installed, as
+ * {@code ecx.request.<type>.*} and {@code ecx.job.<status>.*} gauges, plus the number of probed
+ * endpoints that are {@code ecx.endpoints.up} and {@code ecx.endpoints.down}.
+ */
+@Extension(optional = true)
+public class ECXMetricProvider extends MetricProvider {
+
+    private final static String[] REQUEST_TYPES = {"SESSIONID", "JOBS", "JOB", "JOBMONITOR", "JOBRESULT", "JOBSTATUS", "JOBSESSION", "JOBLOG", "JOBSTATE", "PING"};
+    /**
+     * How long the gauges of one {@link ECXRequestStats} share a summary, long enough for a scrape
+     * reading all of them to summarize the counters once.
+     */
+    private final static long SUMMARY_MAX_AGE = 1000;
+
+    private final static String[] JOB_STATUSES = {ECXJobState.COMPLETED, ECXJobState.PARTIAL, ECXJobState.FAILED, ECXJobState.IDLE};
+
+    @Override
+    public MetricSet getMetricSet() {
+        final Map<String, Metric> metrics = new HashMap<>();
+        CachedSummaries requests = new CachedSummaries(ECXMetrics.getRequests());
+        for (String type : REQUEST_TYPES) {
+            addGauges(metrics, requests, MetricRegistry.name("ecx", "request", type), type);
+        }
+        CachedSummaries jobs = new CachedSummaries(ECXMetrics.getJobs());
+        for (String status : JOB_STATUSES) {
+            addGauges(metrics, jobs, MetricRegistry.name("ecx", "job", status), status);
+        }
+        metrics.put(MetricRegistry.name("ecx", "endpoints", "up"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return ECXEndpointHealth.countUp();
+            }
+        });
+        metrics.put(MetricRegistry.name("ecx", "endpoints", "down"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return ECXEndpointHealth.countDown();
+            }
+        });
+        return new MetricSet() {
+            @Override
+            public Map<String, Metric> getMetrics() {
+                return metrics;
+            }
+        };
+    }
+
+    private static void addGauges(Map<String, Metric> metrics, final CachedSummaries stats, String prefix, final String type) {
+        metrics.put(prefix + ".count", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getCount();
+            }
+        });
+        metrics.put(prefix + ".errors", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getErrors();
+            }
+        });
+        metrics.put(prefix + ".bytes", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getBytes();
+            }
+        });
+        metrics.put(prefix + ".mean", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getMeanMillis();
+            }
+        });
+        metrics.put(prefix + ".p50", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getPercentileMillis(50);
+            }
+        });
+        metrics.put(prefix + ".p95", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getPercentileMillis(95);
+            }
+        });
+        metrics.put(prefix + ".p99", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getPercentileMillis(99);
+            }
+        });
+        metrics.put(prefix + ".max", new SummaryGauge(stats, type) {
+            @Override
+            long value(ECXRequestStats.Summary summary) {
+                return summary.getMaxMillis();
+            }
+        });
+    }
+
+    /**
+     * The summaries of one {@link ECXRequestStats}, taken at most once per {@link #SUMMARY_MAX_AGE}.
+     */
+    private static final class CachedSummaries {
+
+        private final ECXRequestStats stats;
+        private Map<String, ECXRequestStats.Summary> summaries;
+        private long takenAt;
+
+        CachedSummaries(ECXRequestStats stats) {
+            this.stats = stats;
+        }
+
+        synchronized Map<String, ECXRequestStats.Summary> summarize() {
+            long now = System.currentTimeMillis();
+            if (summaries == null || now - takenAt >= SUMMARY_MAX_AGE) {
+                summaries = stats.summarize();
+                takenAt = now;
+            }
+            return summaries;
+        }
+    }
+
+    /**
+     * Reads one value of the recent summary of a type, or 0 until the type was first recorded.
+     */
+    private abstract static class SummaryGauge implements Gauge<Long> {
+
+        private final CachedSummaries stats;
+        private final String type;
+
+        SummaryGauge(CachedSummaries stats, String type) {
+            this.stats = stats;
+            this.type = type;
+        }
+
+        abstract long value(ECXRequestStats.Summary summary);
+
+        @Override
+        public Long getValue() {
+            ECXRequestStats.Summary summary = stats.summarize().get(type);
+            return summary == null ? 0L : value(summary);
+        }
+    }
+}
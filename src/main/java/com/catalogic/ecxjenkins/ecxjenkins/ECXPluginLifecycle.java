@@ -0,0 +1,68 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXAsyncClient;
+import com.catalogic.ecx.sdk.ECXEndpointGuard;
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXHttpClientPool;
+import com.catalogic.ecx.sdk.ECXJobCatalog;
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.ECXRequestCoalescer;
+import com.catalogic.ecx.sdk.ECXResponseCache;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.listeners.ItemListener;
+
+/**
+ * Releases the shared ECX resources when Jenkins shuts the plugin down.
+ */
+public final class ECXPluginLifecycle {
+
+    private static volatile boolean shuttingDown;
+
+    private ECXPluginLifecycle() {
+    }
+
+    /**
+     * @return whether Jenkins is shutting down, so builds interrupted now are cut short by the restart
+     */
+    static boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void start() {
+        shuttingDown = false;
+    }
+
+    @Terminator
+    public static void shutdown() {
+        shuttingDown = true;
+        ECXStatusPoller.shutdown();
+        ECXJobCatalog.shutdown();
+        ECXHttpClientPool.shutdown();
+        ECXEndpointGuard.shutdown();
+        ECXEndpointHealth.shutdown();
+        ECXRequestCoalescer.shutdown();
+        ECXJobHistory.shutdown();
+        ECXJobSlots.shutdown();
+        ECXResponseCache.shutdown();
+        ECXAsyncClient.shutdown();
+        ECXRunJobStepExecution.shutdown();
+    }
+
+    /**
+     * Notes the shutdown before Jenkins interrupts the running builds.
+     */
+    @Extension
+    public static final class ShutdownListener extends ItemListener {
+
+        @Override
+        public void onBeforeShutdown() {
+            shuttingDown = true;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+/**
+ * How the outcomes of several ECX jobs run by one build step combine into the build result.
+ */
+public enum ECXResultPolicy {
+
+    ALLOW_PARTIAL("Fail the build if any job fails, PARTIAL jobs pass"),
+    ALL_SUCCEED("Fail the build unless every job completes"),
+    MARK_UNSTABLE("Mark the build unstable if any job fails or is partial");
+
+    private final String displayName;
+
+    ECXResultPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,220 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.PollSchedule;
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.security.ACL;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import java.util.Collections;
+
+/**
+ * Pipeline step {@code ecxRunJob} that launches an ECX job and waits for it to finish
+ * without holding an executor or a thread.
+ * <p>
+ * The step takes the same settings as {@link ECXCDMBuilder} and returns the final ECX job status.
+ * The ECX user name and password come from Jenkins credentials, so they never appear in the
+ * Pipeline script.
+ */
+public class ECXRunJobStep extends AbstractStepImpl {
+
+    private final String credentialsId;
+    private final String url;
+    private final String job;
+    private boolean production;
+    private int maxWaitTime = 600;
+    private boolean tailJobLog = true;
+    private ECXLaunchPolicy launchPolicy = ECXLaunchPolicy.FORCE;
+    private String endpointGroup;
+    private boolean autoTimeout;
+
+    private Integer fastPollCount;
+    private Integer pollInterval;
+    private Integer maxPollInterval;
+    private Double pollBackoffMultiplier;
+    private Integer pollJitter;
+
+    @DataBoundConstructor
+    public ECXRunJobStep(String credentialsId, String url, String job) {
+        this.credentialsId = credentialsId;
+        this.url = url;
+        this.job = job;
+    }
+
+    /**
+     * @return the id of the username and password credentials to log in to ECX with
+     */
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    public boolean getProduction() {
+        return production;
+    }
+
+    @DataBoundSetter
+    public void setProduction(boolean production) {
+        this.production = production;
+    }
+
+    public int getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @DataBoundSetter
+    public void setMaxWaitTime(int maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    public ECXLaunchPolicy getLaunchPolicy() {
+        return launchPolicy;
+    }
+
+    @DataBoundSetter
+    public void setLaunchPolicy(ECXLaunchPolicy launchPolicy) {
+        this.launchPolicy = launchPolicy == null ? ECXLaunchPolicy.FORCE : launchPolicy;
+    }
+
+    public boolean getTailJobLog() {
+        return tailJobLog;
+    }
+
+    @DataBoundSetter
+    public void setTailJobLog(boolean tailJobLog) {
+        this.tailJobLog = tailJobLog;
+    }
+
+    public Integer getFastPollCount() {
+        return fastPollCount;
+    }
+
+    @DataBoundSetter
+    public void setFastPollCount(Integer fastPollCount) {
+        this.fastPollCount = fastPollCount;
+    }
+
+    public Integer getPollInterval() {
+        return pollInterval;
+    }
+
+    @DataBoundSetter
+    public void setPollInterval(Integer pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public Integer getMaxPollInterval() {
+        return maxPollInterval;
+    }
+
+    @DataBoundSetter
+    public void setMaxPollInterval(Integer maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    public Double getPollBackoffMultiplier() {
+        return pollBackoffMultiplier;
+    }
+
+    @DataBoundSetter
+    public void setPollBackoffMultiplier(Double pollBackoffMultiplier) {
+        this.pollBackoffMultiplier = pollBackoffMultiplier;
+    }
+
+    public Integer getPollJitter() {
+        return pollJitter;
+    }
+
+    @DataBoundSetter
+    public void setPollJitter(Integer pollJitter) {
+        this.pollJitter = pollJitter;
+    }
+
+    public String getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    /**
+     * Runs the job of a global {@link ECXEndpointGroup} instead of the job at the url.
+     */
+    @DataBoundSetter
+    public void setEndpointGroup(String endpointGroup) {
+        this.endpointGroup = StringUtils.isEmpty(endpointGroup) ? null : endpointGroup;
+    }
+
+    public boolean getAutoTimeout() {
+        return autoTimeout;
+    }
+
+    /**
+     * Waits a multiple of the job's p99 duration instead of the max wait time once enough runs are recorded.
+     */
+    @DataBoundSetter
+    public void setAutoTimeout(boolean autoTimeout) {
+        this.autoTimeout = autoTimeout;
+    }
+
+    /**
+     * @return the username and password credentials with the id, as visible to {@code context}, or null
+     */
+    static StandardUsernamePasswordCredentials lookupCredentials(Item context, String credentialsId) {
+        if (StringUtils.isEmpty(credentialsId)) {
+            return null;
+        }
+        return CredentialsMatchers.firstOrNull(
+                CredentialsProvider.lookupCredentials(StandardUsernamePasswordCredentials.class, context, ACL.SYSTEM, Collections.<DomainRequirement>emptyList()),
+                CredentialsMatchers.withId(credentialsId));
+    }
+
+    PollSchedule createPollSchedule() {
+        ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        return global.createPollSchedule(fastPollCount, pollInterval, maxPollInterval, pollBackoffMultiplier, pollJitter);
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+        public DescriptorImpl() {
+            super(ECXRunJobStepExecution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "ecxRunJob";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Run an ECX CDM job";
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Item context) {
+            return new StandardListBoxModel().withEmptySelection().withAll(
+                    CredentialsProvider.lookupCredentials(StandardUsernamePasswordCredentials.class, context, ACL.SYSTEM, Collections.<DomainRequirement>emptyList()));
+        }
+
+        public ListBoxModel doFillEndpointGroupItems() {
+            ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+            return global.doFillEndpointGroupItems();
+        }
+    }
+}
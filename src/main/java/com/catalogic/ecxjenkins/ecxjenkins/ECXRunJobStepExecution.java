@@ -0,0 +1,627 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXAsyncClient;
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXFuture;
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import com.catalogic.ecx.sdk.ECXJobLogTail;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.ECXJobState;
+import com.catalogic.ecx.sdk.ECXJobStatus;
+import com.catalogic.ecx.sdk.ECXJobWatch;
+import com.catalogic.ecx.sdk.ECXMetrics;
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import com.catalogic.ecx.sdk.ECXSdk;
+import com.catalogic.ecx.sdk.ECXStatusPoller;
+import com.catalogic.ecx.sdk.EtaPollSchedule;
+import com.catalogic.ecx.sdk.PollSchedule;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.google.inject.Inject;
+import hudson.AbortException;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.Secret;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.apache.commons.lang.StringUtils;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link ECXRunJobStep} asynchronously.
+ * <p>
+ * Nothing blocks while the ECX job runs: the job is registered with the {@link ECXStatusPoller},
+ * which calls back on every status change. The fields below are persisted with the Pipeline so
+ * monitoring picks up again after a restart; the password only in its encrypted form.
+ * <p>
+ * The ECX requests of launching, finishing and tailing the log block, so they run on a small pool
+ * of their own rather than on the {@link Timer} pool Jenkins shares between all its periodic
+ * work. The state below is changed from that pool, the timer and the poller's threads.
+ */
+public class ECXRunJobStepExecution extends AbstractStepExecutionImpl {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of threads making ECX requests for all Pipeline steps together.
+     */
+    final static int MAX_THREADS = 10;
+
+    /**
+     * How often a step waiting for a free slot of the appliance, see {@link ECXJobSlots}, checks again.
+     */
+    final static long SLOT_RETRY_INTERVAL = 5 * 1000;
+
+    private static ExecutorService executor;
+
+    @Inject(optional = true)
+    private transient ECXRunJobStep step;
+
+    private String name;
+    private String encryptedPassword;
+    private String url;
+    private String job;
+    private boolean production;
+    private PollSchedule schedule;
+    private volatile long deadline;
+    private int maxWaitTime;
+    private volatile ECXJobLogTail logTail;
+    private volatile ECXLaunchPolicy launchPolicy;
+    private String endpointGroup;
+    private double timeoutFactor;
+    private volatile ECXJobHistory.Estimate estimate;
+
+    private volatile boolean waitingForRunningJob;
+    private volatile boolean waitingForSlot;
+    private volatile boolean launched;
+    private volatile long launchedAt;
+    /**
+     * Whether this step launched the run and watched it without a break, so its duration may go
+     * into the job history and metrics.
+     */
+    private volatile boolean watchedFromLaunch;
+    private volatile String lastStatus = "";
+
+    private transient volatile ECXJobWatch watch;
+    private transient volatile ScheduledFuture<?> timeout;
+    private transient volatile ScheduledFuture<?> tailing;
+    private transient volatile String callbackToken;
+    private transient AtomicBoolean done;
+    private transient Object tailLock;
+    private transient ECXRequestStats requestStats;
+    private transient ECXJobSlots.Lease slot;
+
+    @Override
+    public boolean start() throws Exception {
+        endpointGroup = step.getEndpointGroup();
+        if (endpointGroup == null) {
+            // a group member brings its own login
+            StandardUsernamePasswordCredentials credentials = ECXRunJobStep.lookupCredentials(getContext().get(Run.class).getParent(), step.getCredentialsId());
+            if (credentials == null) {
+                throw new AbortException("No username and password credentials with the id " + step.getCredentialsId() + " to log in to ECX with.");
+            }
+            name = credentials.getUsername();
+            encryptedPassword = credentials.getPassword().getEncryptedValue();
+        }
+        url = step.getUrl();
+        job = step.getJob();
+        production = step.getProduction();
+        schedule = step.createPollSchedule();
+        maxWaitTime = step.getMaxWaitTime();
+        deadline = System.currentTimeMillis() + maxWaitTime * 1000L;
+        launchPolicy = step.getLaunchPolicy();
+        if (step.getAutoTimeout()) {
+            ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+            timeoutFactor = global.getAutoTimeoutFactor();
+        }
+        if (step.getTailJobLog()) {
+            logTail = new ECXJobLogTail(job, ECXJobLogTail.DEFAULT_PAGE_SIZE);
+        }
+
+        if (endpointGroup != null) {
+            listener().getLogger().println("Executing an ECX CDM Job of endpoint group " + endpointGroup);
+        } else {
+            listener().getLogger().println("Executing an ECX CDM Job using the following information, " + name + " " + url);
+        }
+
+        scheduleLaunch();
+        return false;
+    }
+
+    @Override
+    public void stop(Throwable cause) throws Exception {
+        if (complete()) {
+            getContext().onFailure(cause);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // the job went on while Jenkins was down, when it ended is only known to the next poll
+        watchedFromLaunch = false;
+        if (launched) {
+            claimSlot();
+        }
+        if (launched || waitingForRunningJob) {
+            startWatching();
+        } else {
+            scheduleLaunch();
+        }
+    }
+
+    @Override
+    public String getStatus() {
+        if (waitingForRunningJob) {
+            return "waiting for the running ECX job " + job + " to end";
+        }
+        if (waitingForSlot) {
+            return "waiting for a free slot on the ECX appliance to launch job " + job;
+        }
+        return launched ? "ECX job " + job + " is " + lastStatus : "launching ECX job " + job;
+    }
+
+    private void scheduleLaunch() {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                launch();
+            }
+        });
+    }
+
+    private void launch() {
+        try {
+            if (endpointGroup != null) {
+                selectGroupMember();
+            } else {
+                ECXCDMBuilder.checkReachable(new ECXEndpoint(name, password(), url, production), listener());
+            }
+            ECXSdk ecx = connect();
+
+            ECXLaunchPolicy policy = launchPolicy == null ? ECXLaunchPolicy.FORCE : launchPolicy;
+            if (policy != ECXLaunchPolicy.FORCE && ECXJobState.ACTIVE.equals(ecx.getJobState(job))) {
+                switch (policy) {
+                    case FAIL:
+                        fail(new AbortException("ECX job " + job + " is already running, not starting it again."));
+                        return;
+                    case ATTACH:
+                        // the tail was not begun, so it follows the latest session, i.e. the running one
+                        listener().getLogger().println("ECX job " + job + " is already running, monitoring the running job instead of starting it again.");
+                        claimSlot();
+                        launchedAt = System.currentTimeMillis();
+                        launched = true;
+                        useHistory();
+                        startWatching();
+                        return;
+                    default:
+                        listener().getLogger().println("ECX job " + job + " is already running, waiting for it to end before starting it again.");
+                        waitingForRunningJob = true;
+                        startWatching();
+                        return;
+                }
+            }
+
+            launchJob(ecx);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Launches the job once the appliance has a free slot, checking again every
+     * {@link #SLOT_RETRY_INTERVAL} without holding a thread meanwhile. Fails the step if no slot
+     * frees up within the maximum wait time.
+     */
+    private void launchJob(ECXSdk ecx) {
+        try {
+            if (done()) {
+                return;
+            }
+            if (!takeSlot()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    fail(new AbortException("No slot of ECX appliance " + url + " freed up within " + maxWaitTime + " s, not launching job " + job + "."));
+                    return;
+                }
+                if (!waitingForSlot) {
+                    waitingForSlot = true;
+                    listener().getLogger().println("ECX appliance " + url + " already runs " + ECXJobSlots.getMaxJobs()
+                            + " jobs of this Jenkins, waiting for one to end before launching job " + job + ".");
+                }
+                Timer.get().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        executor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                launchJob(null);
+                            }
+                        });
+                    }
+                }, SLOT_RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (waitingForSlot) {
+                waitingForSlot = false;
+                deadline = System.currentTimeMillis() + maxWaitTime * 1000L;
+            }
+            if (ecx == null) {
+                ecx = connect();
+            }
+
+            beginLogTail(ecx);
+            launchedAt = System.currentTimeMillis();
+            ecx.runJob(job);
+
+            Iterator<String> launchMessages = ecx.getStatus();
+            while (launchMessages.hasNext()) {
+                lastStatus = launchMessages.next();
+                launchMessages.remove();
+                listener().getLogger().println(lastStatus);
+            }
+            launched = true;
+            watchedFromLaunch = true;
+            useHistory();
+            startWatching();
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Takes the expected duration of the job from its history, which moves the polls near the
+     * expected end and, with an automatic timeout, the deadline.
+     */
+    private void useHistory() throws IOException, InterruptedException {
+        estimate = ECXJobHistory.get(url, job).estimate();
+        long wait = ECXJobRunner.getMaxWaitMillis(estimate, maxWaitTime * 1000L, timeoutFactor, listener(), "", job);
+        if (estimate != null && timeoutFactor > 0) {
+            deadline = launchedAt + wait;
+        }
+    }
+
+    private void startWatching() {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            timedOut();
+            return;
+        }
+
+        timeout = Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                timedOut();
+            }
+        }, remaining, TimeUnit.MILLISECONDS);
+
+        if (logTail != null && !waitingForRunningJob) {
+            scheduleLogTail();
+        }
+
+        PollSchedule watchSchedule = estimate != null && launched ? new EtaPollSchedule(schedule, launchedAt, estimate) : schedule;
+        watch = ECXStatusPoller.watch(name, password(), url, production, job, watchSchedule, new ECXJobWatch.Listener() {
+            @Override
+            public void onStatus(ECXJobWatch watch, String status) {
+                statusChanged(status);
+            }
+
+            @Override
+            public void onError(ECXJobWatch watch, Exception error) {
+                fail(error);
+            }
+        });
+
+        ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        if (global.getCallbacksEnabled() && !waitingForRunningJob) {
+            callbackToken = ECXCallbackAction.register(watch);
+            try {
+                listener().getLogger().println("ECX can report the end of the job with an HTTP POST to " + ECXCallbackAction.getCallbackUrl(callbackToken));
+            } catch (IOException | InterruptedException e) {
+                // the callback still works, only the URL is not shown
+            }
+        }
+    }
+
+    private synchronized void statusChanged(String msg) {
+        if (waitingForRunningJob) {
+            runningJobChanged(msg);
+            return;
+        }
+        try {
+            if (!StringUtils.isEmpty(msg) && msg.compareTo(lastStatus) != 0) {
+                listener().getLogger().println(msg);
+            }
+            lastStatus = msg;
+
+            if (ECXJobState.isTerminal(msg)) {
+                executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Launches the job once the run that was going on when the step started has ended.
+     */
+    private synchronized void runningJobChanged(String msg) {
+        if (StringUtils.isEmpty(msg) || ECXJobState.ACTIVE.equals(msg) || done()) {
+            return;
+        }
+        stopWatching();
+        waitingForRunningJob = false;
+        launchPolicy = ECXLaunchPolicy.FORCE;
+        deadline = System.currentTimeMillis() + maxWaitTime * 1000L;
+        scheduleLaunch();
+    }
+
+    /**
+     * Asks for the outcome of the run on the endpoint's {@link ECXAsyncClient}, so no step thread
+     * waits for the answer.
+     */
+    private void finish() {
+        printLogTail();
+        try {
+            ECXAsyncClient.forEndpoint(new ECXEndpoint(name, password(), url, production)).getJobStatusAsync(job, requestStats())
+                    .addCallback(new ECXFuture.Callback<ECXJobStatus>() {
+                        @Override
+                        public void onSuccess(ECXJobStatus result) {
+                            ended(result.getLastSessionStatus());
+                        }
+
+                        @Override
+                        public void onFailure(Throwable failure) {
+                            fail(failure);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    private void ended(String msg) {
+        try {
+            listener().getLogger().println(msg);
+
+            if (!complete()) {
+                return;
+            }
+            long duration = System.currentTimeMillis() - launchedAt;
+            if (watchedFromLaunch) {
+                ECXMetrics.recordJob(msg, duration);
+                ECXJobHistory.get(url, job).record(System.currentTimeMillis(), duration, msg);
+            }
+
+            ECXBuildMetricsAction metrics = ECXBuildMetricsAction.of(getContext().get(Run.class));
+            metrics.addRequests(requestStats());
+            metrics.addJob(job, msg, duration);
+            if (ECXJobState.FAILED.equals(msg)) {
+                getContext().onFailure(new AbortException("ECX " + job + " Failed!"));
+            } else {
+                getContext().onSuccess(msg);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void beginLogTail(ECXSdk ecx) throws IOException, InterruptedException {
+        if (logTail == null) {
+            return;
+        }
+        try {
+            logTail.begin(ecx);
+        } catch (RuntimeException e) {
+            listener().getLogger().println("Not showing the ECX job log: " + e.getMessage());
+            logTail = null;
+        }
+    }
+
+    /**
+     * Prints the new job log entries every {@link ECXJobRunner#LOG_TAIL_INTERVAL}, counted from the
+     * end of the previous print so a slow ECX never has two prints of one step queued.
+     */
+    private void scheduleLogTail() {
+        tailing = Timer.get().schedule(new Runnable() {
+            @Override
+            public void run() {
+                executor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        printLogTail();
+                        if (logTail != null && !done()) {
+                            scheduleLogTail();
+                        }
+                    }
+                });
+            }
+        }, ECXJobRunner.LOG_TAIL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prints the job log entries that are new since the last call. Tailing stops on the first error.
+     */
+    private void printLogTail() {
+        synchronized (tailLock()) {
+            if (logTail == null) {
+                return;
+            }
+            try {
+                logTail = ECXJobRunner.printLogTail(logTail, connect(), listener(), "");
+            } catch (Exception e) {
+                logTail = null;
+            }
+        }
+        if (logTail == null) {
+            ScheduledFuture<?> t = tailing;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+    }
+
+    private void timedOut() {
+        fail(new AbortException("ECX CDM Build step for job " + job + " timed out waiting for the ECX job to complete! You may want to check ECX to see how long the job ran and potentially increase the configuration timeout."));
+    }
+
+    private void fail(Throwable cause) {
+        if (complete()) {
+            getContext().onFailure(cause);
+        }
+    }
+
+    /**
+     * Stops watching the ECX job.
+     *
+     * @return true for the first caller only, who then reports the outcome to the context
+     */
+    private boolean complete() {
+        if (!doneFlag().compareAndSet(false, true)) {
+            return false;
+        }
+        stopWatching();
+        return true;
+    }
+
+    /**
+     * Keeps the final print of the log tail apart from a periodic one, without holding up status callbacks.
+     */
+    private synchronized Object tailLock() {
+        if (tailLock == null) {
+            tailLock = new Object();
+        }
+        return tailLock;
+    }
+
+    private boolean done() {
+        return doneFlag().get();
+    }
+
+    private synchronized AtomicBoolean doneFlag() {
+        if (done == null) {
+            done = new AtomicBoolean();
+        }
+        return done;
+    }
+
+    private synchronized boolean takeSlot() {
+        if (slot == null) {
+            slot = ECXJobSlots.lease(url);
+        }
+        return slot.tryAcquire();
+    }
+
+    private synchronized void claimSlot() {
+        if (slot == null) {
+            slot = ECXJobSlots.lease(url);
+        }
+        slot.claim();
+    }
+
+    private synchronized void releaseSlot() {
+        if (slot != null) {
+            slot.release();
+        }
+    }
+
+    private void stopWatching() {
+        releaseSlot();
+        ECXCallbackAction.unregister(callbackToken);
+        ECXJobWatch w;
+        synchronized (this) {
+            w = watch;
+            watch = null;
+        }
+        if (w != null) {
+            w.cancel();
+            requestStats().add(w.summarizePolls());
+        }
+        ScheduledFuture<?> t = timeout;
+        if (t != null) {
+            t.cancel(false);
+        }
+        t = tailing;
+        if (t != null) {
+            t.cancel(false);
+        }
+    }
+
+    /**
+     * Takes the appliance, login and job of the group member picked for this run.
+     */
+    private void selectGroupMember() throws IOException, InterruptedException {
+        ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) Jenkins.getInstance().getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        ECXEndpointGroupMember member = global.getEndpointGroupByName(endpointGroup).select(listener());
+        name = member.getName();
+        encryptedPassword = member.getPassword().getEncryptedValue();
+        url = member.getUrl();
+        production = member.getProduction();
+        job = member.getJob();
+        if (logTail != null) {
+            logTail = new ECXJobLogTail(job, ECXJobLogTail.DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    private ECXSdk connect() {
+        ECXSdk ecx = new ECXSdk(name, password(), url, production);
+        ecx.setRequestStats(requestStats());
+        ecx.connect();
+        return ecx;
+    }
+
+    private String password() {
+        return Secret.toString(Secret.decrypt(encryptedPassword));
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ECX Pipeline step #" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized ECXRequestStats requestStats() {
+        if (requestStats == null) {
+            requestStats = new ECXRequestStats();
+        }
+        return requestStats;
+    }
+
+    private TaskListener listener() throws IOException, InterruptedException {
+        return getContext().get(TaskListener.class);
+    }
+}
@@ -0,0 +1,67 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ECXAsyncClientTest {
+
+    private StubECXServer stub;
+
+    @Before
+    public void startStub() throws Exception {
+        stub = new StubECXServer(10);
+        stub.setLatency(0);
+        stub.setJobDuration(0, 0);
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void callbackReceivesTheJobStatus() throws Exception {
+        ECXAsyncClient client = ECXAsyncClient.forEndpoint(new ECXEndpoint("admin", "password", stub.getUrl(), false));
+        client.runJobAsync("1001").get(10, TimeUnit.SECONDS);
+
+        final AtomicReference<ECXJobStatus> received = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        ECXRequestStats stats = new ECXRequestStats();
+        client.getJobStatusAsync("1001", stats).addCallback(new ECXFuture.Callback<ECXJobStatus>() {
+            @Override
+            public void onSuccess(ECXJobStatus result) {
+                received.set(result);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(ECXJobState.COMPLETED, received.get().getLastSessionStatus());
+        assertEquals(1, stats.summarize().get("JOBINFO").getCount());
+    }
+
+    @Test
+    public void replacedClientStillServesItsCallers() throws Exception {
+        ECXAsyncClient old = ECXAsyncClient.forEndpoint(new ECXEndpoint("admin", "old", stub.getUrl(), false));
+        assertSame(old, ECXAsyncClient.forEndpoint(new ECXEndpoint("admin", "old", stub.getUrl(), false)));
+
+        ECXAsyncClient fresh = ECXAsyncClient.forEndpoint(new ECXEndpoint("admin", "new", stub.getUrl(), false));
+        assertNotSame(old, fresh);
+        assertEquals("1001", old.getJobStatusAsync("1001").get(10, TimeUnit.SECONDS).getJobId());
+    }
+}
@@ -0,0 +1,122 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ECXEndpointGuardTest {
+
+    private static final AtomicInteger urls = new AtomicInteger();
+
+    private final ECXEndpointGuard guard = ECXEndpointGuard.forEndpoint("http://ecx-" + urls.incrementAndGet());
+
+    @After
+    public void resetConfiguration() {
+        ECXEndpointGuard.configure(0, 0, -1, 0, 0);
+        ECXClock.reset();
+    }
+
+    @Test
+    public void transientFailures() {
+        assertTrue(ECXEndpointGuard.isTransient(new IOException("reset")));
+        assertTrue(ECXEndpointGuard.isTransient(new RuntimeException(new IOException("reset"))));
+        assertTrue(ECXEndpointGuard.isTransient(new ECXResponseException(503)));
+        assertTrue(ECXEndpointGuard.isTransient(new ECXResponseException(429)));
+        assertTrue(ECXEndpointGuard.isTransient(new ECXCircuitOpenException("http://ecx", 1000)));
+        assertFalse(ECXEndpointGuard.isTransient(new ECXResponseException(401)));
+        assertFalse(ECXEndpointGuard.isTransient(new ECXResponseException(404)));
+        assertFalse(ECXEndpointGuard.isTransient(new IllegalStateException("bad answer")));
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() throws Exception {
+        ECXEndpointGuard.configure(1000, 1000, 2, 3, 60);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ECXEndpointGuard.State.CLOSED, guard.getState());
+            guard.acquire();
+            guard.onFailure();
+        }
+        assertEquals(ECXEndpointGuard.State.OPEN, guard.getState());
+        assertRejected();
+    }
+
+    @Test
+    public void successResetsTheFailureCount() throws Exception {
+        ECXEndpointGuard.configure(1000, 1000, 2, 3, 60);
+        guard.onFailure();
+        guard.onFailure();
+        guard.onSuccess();
+        guard.onFailure();
+        guard.onFailure();
+        assertEquals(ECXEndpointGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    public void halfOpenLetsOneProbeThrough() throws Exception {
+        ECXEndpointGuard.configure(1000, 1000, 2, 1, 1);
+        guard.onFailure();
+        ECXClock.advance(1001);
+
+        guard.acquire();
+        assertEquals(ECXEndpointGuard.State.HALF_OPEN, guard.getState());
+        assertRejected();
+
+        guard.onSuccess();
+        assertEquals(ECXEndpointGuard.State.CLOSED, guard.getState());
+        guard.acquire();
+    }
+
+    @Test
+    public void failedProbeOpensAgain() throws Exception {
+        ECXEndpointGuard.configure(1000, 1000, 2, 1, 1);
+        guard.onFailure();
+        ECXClock.advance(1001);
+
+        guard.acquire();
+        guard.onFailure();
+        assertEquals(ECXEndpointGuard.State.OPEN, guard.getState());
+        assertRejected();
+    }
+
+    @Test
+    public void rateLimitSpacesRequestsOutAfterTheBurst() throws Exception {
+        ECXEndpointGuard.configure(10, 2, 2, 5, 30);
+        long start = System.currentTimeMillis();
+        guard.acquire();
+        guard.acquire();
+        assertTrue("the burst should not wait", System.currentTimeMillis() - start < 50);
+
+        guard.acquire();
+        guard.acquire();
+        assertTrue("two requests over the burst at 10 per second should wait about 200 ms",
+                System.currentTimeMillis() - start >= 150);
+    }
+
+    @Test
+    public void retryDelayGrowsAndIsCapped() {
+        for (int i = 0; i < 100; i++) {
+            long first = ECXEndpointGuard.retryDelay(1);
+            assertTrue(first >= 250 && first <= 500);
+            long second = ECXEndpointGuard.retryDelay(2);
+            assertTrue(second >= 500 && second <= 1000);
+            long late = ECXEndpointGuard.retryDelay(20);
+            assertTrue(late >= 2500 && late <= 5000);
+        }
+    }
+
+    private void assertRejected() throws InterruptedException {
+        try {
+            guard.acquire();
+            fail("the circuit should reject the request");
+        } catch (ECXCircuitOpenException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ECXJobCatalogTest {
+
+    private StubECXServer stub;
+
+    @Before
+    public void startStub() throws Exception {
+        stub = new StubECXServer(50);
+        stub.setLatency(0);
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+        ECXJobCatalog.setTtl(ECXJobCatalog.DEFAULT_TTL);
+        ECXClock.reset();
+    }
+
+    @Test
+    public void loadsTheJobListOnce() {
+        ECXJobCatalog catalog = ECXJobCatalog.get("admin", "password", stub.getUrl(), false);
+        assertEquals(50, catalog.size());
+        catalog.search("refresh", 10);
+        catalog.getJobs();
+
+        assertSame(catalog, ECXJobCatalog.get("admin", "password", stub.getUrl(), false));
+        assertEquals(1L, (long) stub.getRequestCounts().get("JOBS"));
+    }
+
+    @Test
+    public void anotherPasswordGetsItsOwnCatalog() {
+        ECXJobCatalog catalog = ECXJobCatalog.get("admin", "password", stub.getUrl(), false);
+        assertNotSame(catalog, ECXJobCatalog.get("admin", "changed", stub.getUrl(), false));
+    }
+
+    @Test
+    public void searchIsCaseInsensitiveAndLimited() {
+        ECXJobCatalog catalog = ECXJobCatalog.get("admin", "password", stub.getUrl(), false);
+
+        assertEquals(10, catalog.search("REFRESH Test", 10).size());
+        assertEquals(50, catalog.search("", 200).size());
+        assertEquals(0, catalog.search("no such job", 200).size());
+    }
+
+    @Test
+    public void searchMatchesPrefixesAndSubstrings() {
+        ECXJobCatalog catalog = ECXJobCatalog.get("admin", "password", stub.getUrl(), false);
+
+        List<ECXJobCatalog.Job> prefix = catalog.search("refresh test dev 1042", 10);
+        assertEquals(1, prefix.size());
+        assertEquals("1042", prefix.get(0).getId());
+
+        List<ECXJobCatalog.Job> contains = catalog.search("[104", 20);
+        assertEquals(10, contains.size());
+        for (ECXJobCatalog.Job job : contains) {
+            assertTrue(job.getId().startsWith("104"));
+        }
+    }
+
+    @Test
+    public void staleListIsServedWhileItRefreshes() throws Exception {
+        ECXJobCatalog.setTtl(1);
+        ECXJobCatalog catalog = ECXJobCatalog.get("admin", "password", stub.getUrl(), false);
+        assertEquals(50, catalog.size());
+        ECXClock.advance(1001);
+
+        assertEquals(50, catalog.size());
+        catalog.awaitRefresh();
+        assertEquals(2L, (long) stub.getRequestCounts().get("JOBS"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ECXJobHistoryTest {
+
+    private static final AtomicInteger urls = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String url = "http://ecx-" + urls.incrementAndGet() + "/api";
+    private File dir;
+
+    @Before
+    public void useFolder() throws Exception {
+        dir = folder.newFolder("ecx-job-history");
+        ECXJobHistory.setDirectory(dir);
+    }
+
+    @After
+    public void keepInMemory() {
+        ECXJobHistory.setDirectory(null);
+    }
+
+    @Test
+    public void noEstimateBeforeEnoughRunsDidNotFail() {
+        ECXJobHistory history = ECXJobHistory.get(url, "1001");
+        for (int i = 0; i < ECXJobHistory.MIN_RUNS - 1; i++) {
+            history.record(i, 1000, ECXJobState.COMPLETED);
+        }
+        history.record(10, 5, ECXJobState.FAILED);
+        assertNull(history.estimate());
+
+        history.record(11, 1000, ECXJobState.PARTIAL);
+        assertNotNull(history.estimate());
+    }
+
+    @Test
+    public void estimateLeavesOutFailedRuns() {
+        ECXJobHistory history = ECXJobHistory.get(url, "1001");
+        for (int i = 1; i <= 100; i++) {
+            history.record(i, i * 1000L, ECXJobState.COMPLETED);
+            history.record(i, 1, ECXJobState.FAILED);
+        }
+
+        ECXJobHistory.Estimate estimate = history.estimate();
+        assertEquals(100, estimate.getRuns());
+        assertEquals(10000, estimate.getP10());
+        assertEquals(50000, estimate.getP50());
+        assertEquals(99000, estimate.getP99());
+        assertEquals(100000, estimate.getMax());
+        assertEquals(297000, estimate.getTimeout(3));
+    }
+
+    @Test
+    public void keepsTheLatestRuns() {
+        ECXJobHistory history = ECXJobHistory.get(url, "1001");
+        for (int i = 0; i < ECXJobHistory.MAX_RUNS + 50; i++) {
+            history.record(i, 1000, ECXJobState.COMPLETED);
+        }
+
+        List<ECXJobHistory.Entry> entries = history.getEntries();
+        assertEquals(ECXJobHistory.MAX_RUNS, entries.size());
+        assertEquals(50, entries.get(0).getEndedAt());
+    }
+
+    @Test
+    public void reloadsFromDisk() {
+        ECXJobHistory history = ECXJobHistory.get(url, "1001");
+        for (int i = 0; i < 3 * ECXJobHistory.MAX_RUNS; i++) {
+            history.record(i, i, i % 2 == 0 ? ECXJobState.COMPLETED : ECXJobState.FAILED);
+        }
+        List<ECXJobHistory.Entry> before = history.getEntries();
+
+        reload();
+        List<ECXJobHistory.Entry> after = ECXJobHistory.get(url, "1001").getEntries();
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getEndedAt(), after.get(i).getEndedAt());
+            assertEquals(before.get(i).getDurationMillis(), after.get(i).getDurationMillis());
+            assertEquals(before.get(i).getStatus(), after.get(i).getStatus());
+        }
+    }
+
+    @Test
+    public void damagedTailKeepsTheRunsBeforeIt() throws Exception {
+        ECXJobHistory history = ECXJobHistory.get(url, "1001");
+        for (int i = 0; i < 10; i++) {
+            history.record(i, 1000, ECXJobState.COMPLETED);
+        }
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        try (RandomAccessFile file = new RandomAccessFile(files[0], "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        reload();
+        history = ECXJobHistory.get(url, "1001");
+        assertEquals(9, history.getEntries().size());
+        history.record(10, 1000, ECXJobState.COMPLETED);
+
+        reload();
+        assertEquals(10, ECXJobHistory.get(url, "1001").getEntries().size());
+    }
+
+    @Test
+    public void historiesAreKeptPerServer() {
+        ECXJobHistory.get(url, "1001").record(1, 1000, ECXJobState.COMPLETED);
+        ECXJobHistory.get(url + "/other", "1001").record(1, 1000, ECXJobState.COMPLETED);
+
+        reload();
+        assertEquals(1, ECXJobHistory.get(url, "1001").getEntries().size());
+        assertEquals(1, ECXJobHistory.get(url + "/other", "1001").getEntries().size());
+        assertEquals(0, ECXJobHistory.get(url, "1002").getEntries().size());
+    }
+
+    /**
+     * Drops the histories held in memory so the next {@link ECXJobHistory#get} reads the files.
+     */
+    private void reload() {
+        ECXJobHistory.setDirectory(null);
+        ECXJobHistory.setDirectory(dir);
+    }
+}
@@ -0,0 +1,100 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ECXJobLogTailTest {
+
+    private StubECXServer stub;
+    private ECXSdk ecx;
+
+    @Before
+    public void startStub() throws Exception {
+        stub = new StubECXServer(10);
+        stub.setLatency(0);
+        stub.setJobDuration(1000, 0);
+        ecx = new ECXSdk("admin", "password", stub.getUrl(), false);
+        ecx.connect();
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void returnsEveryEntryOnceInOrder() throws Exception {
+        ECXJobLogTail tail = new ECXJobLogTail("1001", 2);
+        tail.begin(ecx);
+        ecx.runJob("1001");
+
+        List<ECXLogEntry> entries = new ArrayList<>();
+        while (stub.getJobEndTime("1001") < 0) {
+            entries.addAll(tail.poll(ecx));
+            Thread.sleep(100);
+        }
+        entries.addAll(tail.poll(ecx));
+
+        // one entry every 250 ms of the 1 second run, both ends included, however the polls fell
+        assertEquals(5, entries.size());
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            assertTrue(ids.add(entries.get(i).getId()));
+            if (i > 0) {
+                assertTrue(entries.get(i).getLogTime() > entries.get(i - 1).getLogTime());
+            }
+        }
+    }
+
+    @Test
+    public void skipsTheSessionOfTheRunBefore() throws Exception {
+        stub.setJobDuration(0, 0);
+        ecx.runJob("1002");
+        awaitEnd("1002");
+
+        ECXJobLogTail tail = new ECXJobLogTail("1002", 100);
+        tail.begin(ecx);
+        assertEquals(0, tail.poll(ecx).size());
+        assertNull(tail.getSessionId());
+
+        ecx.runJob("1002");
+        awaitEnd("1002");
+        assertEquals(1, tail.poll(ecx).size());
+        assertNotNull(tail.getSessionId());
+    }
+
+    @Test
+    public void copyKeepsThePosition() throws Exception {
+        stub.setJobDuration(500, 0);
+        ECXJobLogTail tail = new ECXJobLogTail("1003", 100);
+        tail.begin(ecx);
+        ecx.runJob("1003");
+        awaitEnd("1003");
+
+        // the entries at 0, 250 and 500 ms of the ended run
+        assertEquals(3, tail.poll(ecx).size());
+        ECXJobLogTail copy = tail.copy();
+        assertEquals(tail.getSessionId(), copy.getSessionId());
+        assertEquals(0, copy.poll(ecx).size());
+    }
+
+    /**
+     * Waits until the stub reports the run ended, after which it serves all of the run's entries.
+     */
+    private void awaitEnd(String jobId) throws InterruptedException {
+        while (stub.getJobEndTime(jobId) < 0) {
+            Thread.sleep(20);
+        }
+    }
+}
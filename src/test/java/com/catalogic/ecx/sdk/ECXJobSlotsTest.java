@@ -0,0 +1,125 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ECXJobSlotsTest {
+
+    private static final AtomicInteger urls = new AtomicInteger();
+
+    private final String url = "http://ecx-" + urls.incrementAndGet() + "/api";
+
+    @After
+    public void noLimit() {
+        ECXJobSlots.setMaxJobs(ECXJobSlots.DEFAULT_MAX_JOBS);
+    }
+
+    @Test
+    public void noLimitByDefault() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ECXJobSlots.lease(url).tryAcquire());
+        }
+        assertEquals(100, ECXJobSlots.getRunning(url));
+    }
+
+    @Test
+    public void limitIsSharedPerAppliance() {
+        ECXJobSlots.setMaxJobs(2);
+        ECXJobSlots.Lease first = ECXJobSlots.lease(url);
+        ECXJobSlots.Lease second = ECXJobSlots.lease(url);
+
+        assertTrue(first.tryAcquire());
+        assertTrue(second.tryAcquire());
+        assertFalse(ECXJobSlots.lease(url).tryAcquire());
+        assertTrue(ECXJobSlots.lease(url + "/other").tryAcquire());
+
+        first.release();
+        first.release();
+        assertEquals(1, ECXJobSlots.getRunning(url));
+        assertTrue(ECXJobSlots.lease(url).tryAcquire());
+    }
+
+    @Test
+    public void claimGoesOverTheLimit() {
+        ECXJobSlots.setMaxJobs(1);
+        assertTrue(ECXJobSlots.lease(url).tryAcquire());
+
+        ECXJobSlots.Lease running = ECXJobSlots.lease(url);
+        running.claim();
+        assertTrue(running.isHeld());
+        assertEquals(2, ECXJobSlots.getRunning(url));
+    }
+
+    @Test
+    public void waiterGetsTheReleasedSlot() throws Exception {
+        ECXJobSlots.setMaxJobs(1);
+        ECXJobSlots.Lease holder = ECXJobSlots.lease(url);
+        assertTrue(holder.tryAcquire());
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (ECXJobSlots.lease(url).acquire(System.currentTimeMillis() + 60000)) {
+                        acquired.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    // the test fails on the latch
+                }
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+        holder.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(1, ECXJobSlots.getRunning(url));
+    }
+
+    @Test
+    public void raisingTheLimitWakesWaiters() throws Exception {
+        ECXJobSlots.setMaxJobs(1);
+        assertTrue(ECXJobSlots.lease(url).tryAcquire());
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (ECXJobSlots.lease(url).acquire(System.currentTimeMillis() + 60000)) {
+                        acquired.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    // the test fails on the latch
+                }
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+        ECXJobSlots.setMaxJobs(2);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waiterGivesUpAtTheDeadline() throws Exception {
+        ECXJobSlots.setMaxJobs(1);
+        assertTrue(ECXJobSlots.lease(url).tryAcquire());
+
+        ECXJobSlots.Lease waiter = ECXJobSlots.lease(url);
+        long start = System.currentTimeMillis();
+        assertFalse(waiter.acquire(start + 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertFalse(waiter.isHeld());
+        assertEquals(1, ECXJobSlots.getRunning(url));
+    }
+}
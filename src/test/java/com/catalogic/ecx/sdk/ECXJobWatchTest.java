@@ -0,0 +1,60 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ECXJobWatchTest {
+
+    private static final PollSchedule SLOW = new BackoffPollSchedule(0, 1000, 60000, 1, 60000, 0);
+
+    @Test
+    public void terminalStatusEndsTheWaitEvenIfSeenBefore() throws Exception {
+        ECXJobWatch watch = new ECXJobWatch("1000", SLOW, null);
+        watch.update(ECXJobState.IDLE);
+
+        long start = System.currentTimeMillis();
+        assertEquals(ECXJobState.IDLE, watch.awaitChange(ECXJobState.IDLE, 60000));
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    @Test
+    public void unchangedStatusWaitsForTheTimeout() throws Exception {
+        ECXJobWatch watch = new ECXJobWatch("1000", SLOW, null);
+        watch.update(ECXJobState.ACTIVE);
+
+        long start = System.currentTimeMillis();
+        assertEquals(ECXJobState.ACTIVE, watch.awaitChange(ECXJobState.ACTIVE, 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void jobThatEndsBeforeTheFirstPollIsNotWaitedFor() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(0, 0);
+            ECXSdk ecx = new ECXSdk("admin", "password", stub.getUrl(), false);
+            ecx.connect();
+            ecx.runJob("1000");
+            // the launch answer already says the job is idle again
+            String launched = null;
+            for (Iterator<String> messages = ecx.getStatus(); messages.hasNext(); ) {
+                launched = messages.next();
+            }
+            assertEquals(ECXJobState.IDLE, launched);
+
+            ECXJobWatch watch = ECXStatusPoller.watch("admin", "password", stub.getUrl(), false, "1000", SLOW, null);
+            try {
+                long start = System.currentTimeMillis();
+                String status = watch.awaitChange(launched, 60000);
+                assertTrue(status, ECXJobState.isTerminal(status));
+                assertTrue(System.currentTimeMillis() - start < 10000);
+            } finally {
+                watch.cancel();
+            }
+        }
+    }
+}
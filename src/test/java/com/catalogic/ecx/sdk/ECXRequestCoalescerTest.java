@@ -0,0 +1,216 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ECXRequestCoalescerTest {
+
+    private static final AtomicInteger keys = new AtomicInteger();
+
+    private final String key = "session-" + keys.incrementAndGet() + "|JOB|/endeavour/job/1001";
+
+    @After
+    public void resetTtl() {
+        ECXRequestCoalescer.setTtl(ECXRequestCoalescer.DEFAULT_TTL);
+    }
+
+    @Test
+    public void concurrentCallersShareOneRequest() throws Exception {
+        final CountingLoader loader = new CountingLoader(100);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+                        return ECXRequestCoalescer.get(key, true, loader);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Object> result : results) {
+                assertEquals("result-1", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void finishedResultIsNotReusedByDefault() {
+        CountingLoader loader = new CountingLoader(0);
+        assertEquals("result-1", ECXRequestCoalescer.get(key, true, loader));
+        assertEquals("result-2", ECXRequestCoalescer.get(key, true, loader));
+    }
+
+    @Test
+    public void finishedResultIsReusedWithinTheTtl() {
+        ECXRequestCoalescer.setTtl(60000);
+        CountingLoader loader = new CountingLoader(0);
+        assertEquals("result-1", ECXRequestCoalescer.get(key, true, loader));
+        assertEquals("result-1", ECXRequestCoalescer.get(key, true, loader));
+    }
+
+    @Test
+    public void resultThatMustBeFreshIsNeverReused() {
+        ECXRequestCoalescer.setTtl(60000);
+        CountingLoader loader = new CountingLoader(0);
+        assertEquals("result-1", ECXRequestCoalescer.get(key, false, loader));
+        assertEquals("result-2", ECXRequestCoalescer.get(key, false, loader));
+    }
+
+    @Test
+    public void failureIsNotCached() {
+        ECXRequestCoalescer.setTtl(60000);
+        try {
+            ECXRequestCoalescer.get(key, true, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    throw new ECXResponseException(503);
+                }
+            });
+            fail("the request should have failed");
+        } catch (ECXResponseException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals("result-1", ECXRequestCoalescer.get(key, true, new CountingLoader(0)));
+    }
+
+    @Test
+    public void followerAsksAgainWhenTheLeaderIsInterrupted() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Object> leaderResult = new AtomicReference<>();
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                leaderResult.set(request(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        started.countDown();
+                        Thread.sleep(60000);
+                        return "never";
+                    }
+                }));
+            }
+        });
+        leader.start();
+        started.await();
+
+        final CountingLoader loader = new CountingLoader(0);
+        final AtomicReference<Object> followerResult = new AtomicReference<>();
+        Thread follower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                followerResult.set(ECXRequestCoalescer.get(key, true, loader));
+            }
+        });
+        follower.start();
+        // the follower joined the flight once it parks waiting for it
+        while (follower.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        leader.interrupt();
+        leader.join();
+        follower.join();
+
+        assertTrue(leaderResult.get() instanceof RuntimeException);
+        assertEquals("result-1", followerResult.get());
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void timeoutIsShared() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Object> leaderResult = new AtomicReference<>();
+        Thread leader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                leaderResult.set(request(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        started.countDown();
+                        release.await();
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }));
+            }
+        });
+        leader.start();
+        started.await();
+
+        final CountingLoader loader = new CountingLoader(0);
+        final AtomicReference<Object> followerResult = new AtomicReference<>();
+        Thread follower = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                followerResult.set(request(loader));
+            }
+        });
+        follower.start();
+        while (follower.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        release.countDown();
+        leader.join();
+        follower.join();
+
+        assertTimedOut(leaderResult.get());
+        assertTimedOut(followerResult.get());
+        assertEquals(0, loader.loads.get());
+    }
+
+    /**
+     * @return the failure of the request, or its result
+     */
+    private Object request(Callable<Object> loader) {
+        try {
+            return ECXRequestCoalescer.get(key, true, loader);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static void assertTimedOut(Object result) {
+        assertTrue(String.valueOf(result), result instanceof RuntimeException
+                && ((RuntimeException) result).getCause() instanceof SocketTimeoutException);
+    }
+
+    private static final class CountingLoader implements Callable<Object> {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private final long delay;
+
+        private CountingLoader(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            int load = loads.incrementAndGet();
+            Thread.sleep(delay);
+            return "result-" + load;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.catalogic.ecx.sdk;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ECXResponseCacheTest {
+
+    @After
+    public void clearCache() {
+        ECXResponseCache.shutdown();
+    }
+
+    @Test
+    public void largeBodiesAreNotKept() {
+        ECXResponseCache.put("large", tagged("1"), "result", ECXResponseCache.MAX_ENTRY_BYTES + 1);
+
+        assertNull(ECXResponseCache.get("large"));
+        assertEquals(0, ECXResponseCache.getBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedGoFirstOverTheTotalSize() {
+        int fitting = (int) (ECXResponseCache.MAX_BYTES / ECXResponseCache.MAX_ENTRY_BYTES);
+        for (int i = 0; i < fitting; i++) {
+            ECXResponseCache.put("key" + i, tagged(String.valueOf(i)), "result", ECXResponseCache.MAX_ENTRY_BYTES);
+        }
+        assertNotNull(ECXResponseCache.get("key0"));
+
+        ECXResponseCache.put("one more", tagged("x"), "result", ECXResponseCache.MAX_ENTRY_BYTES);
+
+        assertTrue(ECXResponseCache.getBytes() <= ECXResponseCache.MAX_BYTES);
+        assertNotNull(ECXResponseCache.get("key0"));
+        assertNull(ECXResponseCache.get("key1"));
+        assertNotNull(ECXResponseCache.get("one more"));
+    }
+
+    @Test
+    public void replacedAndForgottenEntriesGiveTheirSizeBack() {
+        ECXResponseCache.put("key", tagged("1"), "first", 100);
+        ECXResponseCache.put("key", tagged("2"), "second", 300);
+        assertEquals(300, ECXResponseCache.getBytes());
+
+        ECXResponseCache.put("key", new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), "third", 300);
+        assertNull(ECXResponseCache.get("key"));
+        assertEquals(0, ECXResponseCache.getBytes());
+    }
+
+    private static HttpResponse tagged(String etag) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setHeader(HttpHeaders.ETAG, "\"" + etag + "\"");
+        return response;
+    }
+}
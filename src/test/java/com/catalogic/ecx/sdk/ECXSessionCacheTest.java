@@ -0,0 +1,111 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ECXSessionCacheTest {
+
+    private static final AtomicInteger keys = new AtomicInteger();
+
+    private final String key = "http://ecx-" + keys.incrementAndGet() + "|admin";
+
+    @Test
+    public void concurrentCallersShareOneLogin() throws Exception {
+        final CountingAuthenticator authenticator = new CountingAuthenticator(50);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> sessions = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                sessions.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        start.await();
+                        return ECXSessionCache.getSession(key, "secret", authenticator);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<String> session : sessions) {
+                assertEquals("session-1", session.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, authenticator.logins.get());
+    }
+
+    @Test
+    public void anotherPasswordLogsInAgain() {
+        CountingAuthenticator authenticator = new CountingAuthenticator(0);
+        assertEquals("session-1", ECXSessionCache.getSession(key, "old", authenticator));
+        assertEquals("session-1", ECXSessionCache.getSession(key, "old", authenticator));
+        assertEquals("session-2", ECXSessionCache.getSession(key, "new", authenticator));
+        assertEquals(2, authenticator.logins.get());
+    }
+
+    @Test
+    public void renewReusesASessionSomeoneElseRenewed() {
+        CountingAuthenticator authenticator = new CountingAuthenticator(0);
+        String stale = ECXSessionCache.getSession(key, "secret", authenticator);
+
+        assertEquals("session-2", ECXSessionCache.renewSession(key, "secret", stale, authenticator));
+        assertEquals("session-2", ECXSessionCache.renewSession(key, "secret", stale, authenticator));
+        assertEquals(2, authenticator.logins.get());
+    }
+
+    @Test
+    public void failedLoginDropsTheLock() {
+        int before = ECXSessionCache.getLockCount();
+        try {
+            ECXSessionCache.getSession(key, "wrong", new ECXSessionCache.Authenticator() {
+                @Override
+                public String authenticate() {
+                    throw new ECXResponseException(401);
+                }
+            });
+            fail("the login should have failed");
+        } catch (ECXResponseException e) {
+            assertEquals(before, ECXSessionCache.getLockCount());
+        }
+    }
+
+    @Test
+    public void cachedSessionKeepsItsLock() {
+        int before = ECXSessionCache.getLockCount();
+        ECXSessionCache.getSession(key, "secret", new CountingAuthenticator(0));
+        assertEquals(before + 1, ECXSessionCache.getLockCount());
+    }
+
+    private static final class CountingAuthenticator implements ECXSessionCache.Authenticator {
+
+        private final AtomicInteger logins = new AtomicInteger();
+        private final long delay;
+
+        private CountingAuthenticator(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public String authenticate() {
+            int login = logins.incrementAndGet();
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "session-" + login;
+        }
+    }
+}
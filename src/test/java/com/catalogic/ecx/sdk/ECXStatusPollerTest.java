@@ -0,0 +1,74 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ECXStatusPollerTest {
+
+    private static final PollSchedule SLOW = new BackoffPollSchedule(0, 1000, 60000, 1, 60000, 0);
+
+    private StubECXServer stub;
+    private final List<ECXJobWatch> watches = new ArrayList<>();
+
+    @Before
+    public void startStub() throws Exception {
+        stub = new StubECXServer(2);
+        stub.setLatency(0);
+        stub.setJobDuration(60000, 0);
+        ECXSdk ecx = new ECXSdk("admin", "password", stub.getUrl(), false);
+        ecx.connect();
+        ecx.runJob("1000");
+        ecx.runJob("1001");
+    }
+
+    @After
+    public void stopStub() {
+        for (ECXJobWatch watch : watches) {
+            watch.cancel();
+        }
+        stub.close();
+    }
+
+    @Test
+    public void watchesOfAnotherPasswordStayReachable() {
+        ECXJobWatch old = watch("old", "1000");
+        ECXJobWatch renewed = watch("new", "1001");
+
+        assertEquals(2, ECXStatusPoller.getWatchedJobs(stub.getUrl()));
+        assertTrue(ECXStatusPoller.wake(old));
+        assertTrue(ECXStatusPoller.wake(renewed));
+    }
+
+    @Test
+    public void watchesWithoutPasswordShareAPoller() {
+        ECXJobWatch first = watch(null, "1000");
+        ECXJobWatch second = watch(null, "1001");
+
+        assertEquals(2, ECXStatusPoller.getWatchedJobs(stub.getUrl()));
+        assertTrue(ECXStatusPoller.wake(first));
+        assertTrue(ECXStatusPoller.wake(second));
+    }
+
+    @Test
+    public void finishedWatchesNoLongerCount() {
+        ECXJobWatch watch = watch("password", "1000");
+        watch.cancel();
+
+        assertEquals(0, ECXStatusPoller.getWatchedJobs(stub.getUrl()));
+        assertFalse(ECXStatusPoller.wake(watch));
+    }
+
+    private ECXJobWatch watch(String password, String jobId) {
+        ECXJobWatch watch = ECXStatusPoller.watch("admin", password, stub.getUrl(), false, jobId, SLOW, null);
+        watches.add(watch);
+        return watch;
+    }
+}
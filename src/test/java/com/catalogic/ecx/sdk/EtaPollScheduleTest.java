@@ -0,0 +1,30 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EtaPollScheduleTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void earlyDelayStaysWithinTheWrappedMaximum() {
+        PollSchedule base = new BackoffPollSchedule(0, 1000, 10000, 2, 30000, 0);
+        EtaPollSchedule schedule = new EtaPollSchedule(base, System.currentTimeMillis(), new ECXJobHistory.Estimate(10, HOUR, HOUR, HOUR, HOUR, HOUR));
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            assertTrue(schedule.nextDelay(attempt) <= 30000);
+        }
+        assertEquals(30000, schedule.getMaxDelay());
+    }
+
+    @Test
+    public void earlyDelayIsCappedWhenTheWrappedMaximumIsLonger() {
+        PollSchedule base = new BackoffPollSchedule(0, 1000, 10000, 2, 2 * HOUR, 0);
+        EtaPollSchedule schedule = new EtaPollSchedule(base, System.currentTimeMillis(), new ECXJobHistory.Estimate(10, 2 * HOUR, 2 * HOUR, 2 * HOUR, 2 * HOUR, 2 * HOUR));
+
+        assertEquals(EtaPollSchedule.MAX_EARLY_DELAY, schedule.nextDelay(0));
+    }
+}
@@ -0,0 +1,74 @@
+package com.catalogic.ecx.sdk;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JSONStreamExtractorTest {
+
+    @Test
+    public void topLevelProperties() throws Exception {
+        JSONStreamExtractor info = JSONStreamExtractor.forProperties("id", "status", "lastSessionStatus")
+                .parse(new StringReader(Payloads.job("1001", "ACTIVE")));
+
+        assertEquals("1001", info.getString("id"));
+        assertEquals("ACTIVE", info.getString("status"));
+        assertEquals("COMPLETED", info.getString("lastSessionStatus"));
+    }
+
+    @Test
+    public void nestedPropertiesOfTheSameNameAreIgnored() throws Exception {
+        String json = "{\"lastrun\":{\"status\":\"COMPLETED\"},\"links\":[{\"status\":\"x\"}],\"status\":\"IDLE\"}";
+        assertEquals("IDLE", JSONStreamExtractor.forProperties("status").parse(new StringReader(json)).getString("status"));
+    }
+
+    @Test
+    public void missingPropertyIsNull() throws Exception {
+        JSONStreamExtractor session = JSONStreamExtractor.forProperties("sessionid", "token").parse(new StringReader(Payloads.session()));
+
+        assertEquals("8f1c9e0d4b2a4c6f9a7e3d5b1c0f2e4a", session.getString("sessionid"));
+        assertNull(session.getString("token"));
+    }
+
+    @Test
+    public void stopsOnceAllPropertiesWereSeen() throws Exception {
+        String json = "{\"sessionid\":\"abc\", this is never read";
+        assertEquals("abc", JSONStreamExtractor.forProperties("sessionid").parse(new StringReader(json)).getString("sessionid"));
+    }
+
+    @Test
+    public void arrayElementsAreReducedToTheWantedProperties() throws Exception {
+        final List<Map<String, Object>> jobs = new ArrayList<>();
+        JSONStreamExtractor.forArray("jobs", new JSONStreamExtractor.ElementHandler() {
+            @Override
+            public void onElement(Map<String, Object> element) {
+                jobs.add(element);
+            }
+        }, "id", "status").parse(new StringReader(Payloads.jobs(10)));
+
+        assertEquals(10, jobs.size());
+        assertEquals("1000", jobs.get(0).get("id"));
+        assertEquals("ACTIVE", jobs.get(0).get("status"));
+        assertEquals("IDLE", jobs.get(1).get("status"));
+        assertEquals(2, jobs.get(1).size());
+    }
+
+    @Test
+    public void otherArraysAreSkipped() throws Exception {
+        final List<Map<String, Object>> sessions = new ArrayList<>();
+        JSONStreamExtractor.forArray("sessions", new JSONStreamExtractor.ElementHandler() {
+            @Override
+            public void onElement(Map<String, Object> element) {
+                sessions.add(element);
+            }
+        }, "id").parse(new StringReader(Payloads.jobs(3)));
+
+        assertEquals(0, sessions.size());
+    }
+}
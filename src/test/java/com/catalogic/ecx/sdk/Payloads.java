@@ -0,0 +1,46 @@
+package com.catalogic.ecx.sdk;
+
+import java.nio.charset.Charset;
+
+/**
+ * ECX REST responses shaped like the ones returned by a real appliance.
+ */
+final class Payloads {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Payloads() {
+    }
+
+    static String session() {
+        return "{\"sessionid\":\"8f1c9e0d4b2a4c6f9a7e3d5b1c0f2e4a\","
+                + "\"user\":{\"id\":\"1000\",\"name\":\"admin\",\"type\":\"NATIVE_USER\",\"permissions\":[\"ADMIN\",\"OPERATOR\"],"
+                + "\"links\":{\"self\":{\"rel\":\"self\",\"href\":\"https://ecx/api/security/user/1000\"}}},"
+                + "\"timeZone\":\"America/New_York\",\"userGroups\":[],\"demo\":false}";
+    }
+
+    static String job(String id, String status) {
+        return "{\"id\":\"" + id + "\",\"name\":\"Refresh test dev " + id + "\",\"description\":\"Restore of the nightly copy for test dev\","
+                + "\"policyId\":\"" + (2000 + id.hashCode() % 100) + "\",\"policyName\":\"TestDev Refresh\",\"type\":\"restore\",\"subType\":\"vmware\","
+                + "\"serviceId\":\"serviceprovider.recovery.hypervisor\",\"displayName\":\"Refresh test dev " + id + "\","
+                + "\"status\":\"" + status + "\",\"lastSessionStatus\":\"COMPLETED\",\"lastSessionDuration\":1843,"
+                + "\"lastrun\":{\"sessionId\":\"1520000000" + id + "\",\"jobName\":\"Refresh test dev " + id + "\",\"type\":\"restore\","
+                + "\"status\":\"COMPLETED\",\"start\":1520000000000,\"end\":1520001843000,\"duration\":1843000,\"results\":\"Completed\"},"
+                + "\"triggerIds\":[\"3001\",\"3002\"],\"tenantId\":1000,\"storageProfiles\":[\"gold\",\"silver\"],"
+                + "\"links\":{\"self\":{\"rel\":\"self\",\"href\":\"https://ecx/api/endeavour/job/" + id + "\"},"
+                + "\"start\":{\"rel\":\"action\",\"href\":\"https://ecx/api/endeavour/job/" + id + "?action=start\"},"
+                + "\"latestlog\":{\"rel\":\"related\",\"href\":\"https://ecx/api/endeavour/log/job?jobsessionId=1520000000" + id + "\"}}}";
+    }
+
+    static String jobs(int count) {
+        StringBuilder sb = new StringBuilder("{\"links\":{\"self\":{\"rel\":\"self\",\"href\":\"https://ecx/api/endeavour/job\"}},\"total\":");
+        sb.append(count).append(",\"jobs\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(job(String.valueOf(1000 + i), i % 7 == 0 ? "ACTIVE" : "IDLE"));
+        }
+        return sb.append("],\"page\":1}").toString();
+    }
+}
@@ -0,0 +1,420 @@
+package com.catalogic.ecx.sdk;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the ECX REST API.
+ * <p>
+ * Serves {@code /api/endeavour/session}, {@code /api/endeavour/job} (optionally filtered on id) and
+ * {@code /api/endeavour/job/{id}} including {@code ?action=start}, plus the job session and job log
+ * queries. A started job reports ACTIVE for its configured duration and then goes back to IDLE with
+ * a COMPLETED or FAILED last session; while it runs it logs an entry every 250 milliseconds.
+ * Response latency, HTTP errors and job failures can be injected, and every request is counted.
+ * Optionally the stub gzips responses for clients that accept it, and tags them with an ETag it
+ * answers with {@code 304 Not Modified} when a client sends it back unchanged.
+ */
+public class StubECXServer implements Closeable {
+
+    private static final Pattern FILTER_IDS = Pattern.compile("\"value\"\\s*:\\s*\\[([^\\]]*)\\]");
+    private static final Pattern FILTER_VALUE = Pattern.compile("\"property\"\\s*:\\s*\"(\\w+)\"\\s*,\\s*\"value\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern PAGE_SIZE = Pattern.compile("pageSize=(\\d+)");
+    private static final long LOG_INTERVAL = 250;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] session;
+    private final byte[] jobs;
+
+    private volatile long latency;
+    private volatile long jobDuration = 30000;
+    private volatile double jobDurationJitter;
+    private volatile double errorRate;
+    private volatile double failureRate;
+    private volatile boolean compression;
+    private volatile boolean conditionalGets;
+
+    private final Map<String, JobRun> runs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong(1520000000000L);
+    private final Map<String, Boolean> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public StubECXServer(int jobCount) throws IOException {
+        this(jobCount, 16);
+    }
+
+    public StubECXServer(int jobCount, int threads) throws IOException {
+        session = Payloads.session().getBytes(Payloads.UTF8);
+        jobs = Payloads.jobs(jobCount).getBytes(Payloads.UTF8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/api/endeavour/session", new StubHandler() {
+            @Override
+            void serve(HttpExchange exchange) throws IOException {
+                count("GET".equals(exchange.getRequestMethod()) ? "PING" : "SESSIONID");
+                respond(exchange, 200, session);
+            }
+        });
+        server.createContext("/api/endeavour/jobsession", new StubHandler() {
+            @Override
+            void serve(HttpExchange exchange) throws IOException {
+                count("JOBSESSION");
+                serveJobSession(exchange);
+            }
+        });
+        server.createContext("/api/endeavour/log/job", new StubHandler() {
+            @Override
+            void serve(HttpExchange exchange) throws IOException {
+                count("JOBLOG");
+                serveJobLog(exchange);
+            }
+        });
+        server.createContext("/api/endeavour/job", new StubHandler() {
+            @Override
+            void serve(HttpExchange exchange) throws IOException {
+                serveJob(exchange);
+            }
+        });
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param duration how long a started job stays ACTIVE, in milliseconds
+     * @param jitter   fraction by which each run's duration randomly varies
+     */
+    public void setJobDuration(long duration, double jitter) {
+        this.jobDuration = duration;
+        this.jobDurationJitter = jitter;
+    }
+
+    /**
+     * @param errorRate fraction of requests answered with HTTP 500
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param failureRate fraction of job runs ending with a FAILED last session
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @param compression whether responses are gzipped for clients sending {@code Accept-Encoding: gzip}
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @param conditionalGets whether responses carry an ETag and matching {@code If-None-Match} requests get a 304
+     */
+    public void setConditionalGets(boolean conditionalGets) {
+        this.conditionalGets = conditionalGets;
+    }
+
+    /**
+     * @return when the last run of the job finished, or -1 while it runs or if it never ran
+     */
+    public long getJobEndTime(String jobId) {
+        JobRun run = runs.get(jobId);
+        return run == null || run.isActive() ? -1 : run.end;
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : requests.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public long getTotalRequests() {
+        long total = 0;
+        for (AtomicLong count : requests.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public long getInjectedErrors() {
+        return errors.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * @return the response body bytes written, after compression
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return the number of distinct client connections opened against the stub
+     */
+    public int getConnectionsOpened() {
+        return clients.size();
+    }
+
+    public int getPeakConcurrentRequests() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serveJob(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        if (path.equals("/api/endeavour/job") || path.equals("/api/endeavour/job/")) {
+            count(query != null && query.startsWith("filter") ? "JOBSTATUS" : "JOBS");
+            if (query != null && query.startsWith("filter")) {
+                respond(exchange, 200, filteredJobs(URLDecoder.decode(query.substring("filter=".length()), "UTF-8")));
+            } else {
+                respond(exchange, 200, jobs);
+            }
+            return;
+        }
+
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        if ("POST".equals(exchange.getRequestMethod()) && query != null && query.contains("action=start")) {
+            count("JOB");
+            respond(exchange, 200, jobJson(start(id)).getBytes(Payloads.UTF8));
+        } else {
+            count("JOBMONITOR");
+            respond(exchange, 200, jobJson(id).getBytes(Payloads.UTF8));
+        }
+    }
+
+    private String start(String id) {
+        double jitter = jobDurationJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        long duration = Math.max(0, (long) (jobDuration * (1 + jitter)));
+        boolean failed = ThreadLocalRandom.current().nextDouble() < failureRate;
+
+        long now = System.currentTimeMillis();
+        runs.put(id, new JobRun(sessions.incrementAndGet(), now, now + duration, failed));
+        return id;
+    }
+
+    private String jobJson(String id) {
+        JobRun run = runs.get(id);
+        String status = run != null && run.isActive() ? ECXJobState.ACTIVE : ECXJobState.IDLE;
+        String json = Payloads.job(id, status);
+        if (run != null && !run.isActive() && run.failed) {
+            json = json.replace("\"lastSessionStatus\":\"COMPLETED\"", "\"lastSessionStatus\":\"FAILED\"");
+        }
+        return json;
+    }
+
+    private void serveJobSession(HttpExchange exchange) throws IOException {
+        Map<String, String> filter = filterValues(exchange);
+        JobRun run = runs.get(filter.get("jobId"));
+
+        StringBuilder sb = new StringBuilder("{\"sessions\":[");
+        if (run != null) {
+            sb.append("{\"id\":\"").append(run.sessionId).append("\",\"jobId\":\"").append(filter.get("jobId"))
+                    .append("\",\"start\":").append(run.start).append(",\"status\":\"")
+                    .append(run.isActive() ? "RUNNING" : run.failed ? "FAILED" : "COMPLETED").append("\"}");
+        }
+        respond(exchange, 200, sb.append("]}").toString().getBytes(Payloads.UTF8));
+    }
+
+    private void serveJobLog(HttpExchange exchange) throws IOException {
+        Map<String, String> filter = filterValues(exchange);
+        Matcher pageSize = PAGE_SIZE.matcher(String.valueOf(exchange.getRequestURI().getRawQuery()));
+        int limit = pageSize.find() ? Integer.parseInt(pageSize.group(1)) : 100;
+        long from = filter.containsKey("logTime") ? Long.parseLong(filter.get("logTime")) : 0;
+
+        JobRun run = null;
+        for (JobRun candidate : runs.values()) {
+            if (String.valueOf(candidate.sessionId).equals(filter.get("jobsessionId"))) {
+                run = candidate;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder("{\"logs\":[");
+        if (run != null) {
+            long until = Math.min(System.currentTimeMillis(), run.end);
+            long first = Math.max(0, (from - run.start + LOG_INTERVAL - 1) / LOG_INTERVAL);
+            for (long i = first, n = 0; run.start + i * LOG_INTERVAL <= until && n < limit; i++, n++) {
+                if (n > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"id\":\"").append(run.sessionId).append('-').append(i).append("\",\"jobsessionId\":\"")
+                        .append(run.sessionId).append("\",\"logTime\":").append(run.start + i * LOG_INTERVAL)
+                        .append(",\"type\":\"INFO\",\"message\":\"Step ").append(i).append(" of the job\"}");
+            }
+        }
+        respond(exchange, 200, sb.append("]}").toString().getBytes(Payloads.UTF8));
+    }
+
+    private static Map<String, String> filterValues(HttpExchange exchange) throws IOException {
+        Map<String, String> values = new TreeMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            Matcher matcher = FILTER_VALUE.matcher(URLDecoder.decode(query, "UTF-8"));
+            while (matcher.find()) {
+                values.put(matcher.group(1), matcher.group(2));
+            }
+        }
+        return values;
+    }
+
+    private byte[] filteredJobs(String filter) {
+        StringBuilder sb = new StringBuilder("{\"jobs\":[");
+        Matcher matcher = FILTER_IDS.matcher(filter);
+        if (matcher.find()) {
+            boolean first = true;
+            for (String id : matcher.group(1).split(",")) {
+                id = id.trim().replace("\"", "");
+                if (id.isEmpty()) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(jobJson(id));
+            }
+        }
+        return sb.append("]}").toString().getBytes(Payloads.UTF8);
+    }
+
+    private void count(String type) {
+        AtomicLong count = requests.get(type);
+        if (count == null) {
+            requests.putIfAbsent(type, new AtomicLong());
+            count = requests.get(type);
+        }
+        count.incrementAndGet();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (status == 200 && conditionalGets && "GET".equals(exchange.getRequestMethod())) {
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                // the JDK server drops the connection after a 304, tell the client not to reuse it
+                exchange.getResponseHeaders().add("Connection", "close");
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (compression && body.length > 0 && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+                gzip.write(body);
+            }
+            body = gzipped.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        bytesSent.addAndGet(body.length);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Applies the injected latency and errors and tracks concurrency before serving a request.
+     */
+    private abstract class StubHandler implements HttpHandler {
+
+        abstract void serve(HttpExchange exchange) throws IOException;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int current = inFlight.incrementAndGet();
+            try {
+                int peak;
+                while (current > (peak = peakInFlight.get()) && !peakInFlight.compareAndSet(peak, current)) {
+                    // retry
+                }
+                clients.put(exchange.getRemoteAddress().toString(), Boolean.TRUE);
+
+                if (latency > 0) {
+                    try {
+                        Thread.sleep(latency);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    errors.incrementAndGet();
+                    respond(exchange, 500, new byte[0]);
+                    return;
+                }
+                serve(exchange);
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+    private static final class JobRun {
+
+        private final long sessionId;
+        private final long start;
+        private final long end;
+        private final boolean failed;
+
+        private JobRun(long sessionId, long start, long end, boolean failed) {
+            this.sessionId = sessionId;
+            this.start = start;
+            this.end = end;
+            this.failed = failed;
+        }
+
+        private boolean isActive() {
+            return System.currentTimeMillis() < end;
+        }
+    }
+}
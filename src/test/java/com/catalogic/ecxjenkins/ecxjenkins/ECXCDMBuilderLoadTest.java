@@ -0,0 +1,147 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXMetrics;
+import com.catalogic.ecx.sdk.ECXRequestStats;
+import com.catalogic.ecx.sdk.StubECXServer;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs many freestyle builds with an {@link ECXCDMBuilder} step at once against a {@link StubECXServer}.
+ * <p>
+ * By default this is a short smoke run; system properties scale it up into a load or soak test:
+ * <pre>
+ *   mvn test -Dtest=ECXCDMBuilderLoadTest -Djenkins.test.timeout=3600 \
+ *       -Decx.load.builds=200 -Decx.load.rounds=5 -Decx.load.duration=30000 -Decx.load.errorRate=0.01
+ * </pre>
+ * Further properties are {@code ecx.load.jobs}, {@code ecx.load.latency},
+ * {@code ecx.load.durationJitter}, {@code ecx.load.failureRate}, {@code ecx.load.maxWait},
+ * {@code ecx.load.gzip} and {@code ecx.load.conditional}. Each round prints the requests per
+ * endpoint type, connections, thread usage, the client side {@link ECXMetrics} and how long after
+ * its ECX job ended each build finished, and the log of the first build that did not succeed.
+ */
+public class ECXCDMBuilderLoadTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void concurrentBuilds() throws Exception {
+        int builds = Integer.getInteger("ecx.load.builds", 20);
+        int rounds = Integer.getInteger("ecx.load.rounds", 1);
+        int jobs = Integer.getInteger("ecx.load.jobs", builds);
+        int maxWait = Integer.getInteger("ecx.load.maxWait", 600);
+        double errorRate = doubleProperty("ecx.load.errorRate", 0);
+        double failureRate = doubleProperty("ecx.load.failureRate", 0);
+
+        try (StubECXServer stub = new StubECXServer(jobs, 32)) {
+            stub.setLatency(Integer.getInteger("ecx.load.latency", 20));
+            stub.setJobDuration(Integer.getInteger("ecx.load.duration", 2000), doubleProperty("ecx.load.durationJitter", 0.5));
+            stub.setErrorRate(errorRate);
+            stub.setFailureRate(failureRate);
+            stub.setCompression(Boolean.getBoolean("ecx.load.gzip"));
+            stub.setConditionalGets(Boolean.getBoolean("ecx.load.conditional"));
+
+            r.jenkins.setNumExecutors(builds);
+            List<FreeStyleProject> projects = new ArrayList<>();
+            for (int i = 0; i < builds; i++) {
+                FreeStyleProject p = r.createFreeStyleProject("ecx-load-" + i);
+                p.getBuildersList().add(new ECXCDMBuilder("admin", "password", stub.getUrl(),
+                        String.valueOf(1000 + i % jobs), false, maxWait));
+                projects.add(p);
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            int baselineThreads = threads.getThreadCount();
+            threads.resetPeakThreadCount();
+
+            int unsuccessful = 0;
+            for (int round = 1; round <= rounds; round++) {
+                long start = System.currentTimeMillis();
+                List<QueueTaskFuture<FreeStyleBuild>> running = new ArrayList<>();
+                for (FreeStyleProject p : projects) {
+                    running.add(p.scheduleBuild2(0));
+                }
+
+                List<Long> detection = new ArrayList<>();
+                FreeStyleBuild firstUnsuccessful = null;
+                int roundUnsuccessful = 0;
+                for (int i = 0; i < running.size(); i++) {
+                    FreeStyleBuild build = running.get(i).get();
+                    if (build.getResult() != Result.SUCCESS) {
+                        roundUnsuccessful++;
+                        if (firstUnsuccessful == null) {
+                            firstUnsuccessful = build;
+                        }
+                        continue;
+                    }
+                    long ended = stub.getJobEndTime(String.valueOf(1000 + i % jobs));
+                    if (ended > 0) {
+                        detection.add(build.getStartTimeInMillis() + build.getDuration() - ended);
+                    }
+                }
+                long elapsed = System.currentTimeMillis() - start;
+
+                System.out.println("Round " + round + " of " + rounds + ": " + builds + " builds in " + elapsed + " ms");
+                report(stub, detection, baselineThreads, threads.getPeakThreadCount());
+                if (firstUnsuccessful != null) {
+                    System.out.println("  builds not successful: " + roundUnsuccessful + ", the first one, "
+                            + firstUnsuccessful.getFullDisplayName() + ", logged:");
+                    System.out.println(JenkinsRule.getLog(firstUnsuccessful));
+                }
+                unsuccessful += roundUnsuccessful;
+            }
+
+            if (errorRate == 0 && failureRate == 0) {
+                assertEquals("builds that did not succeed", 0, unsuccessful);
+            }
+        }
+    }
+
+    private static void report(StubECXServer stub, List<Long> detection, int baselineThreads, int peakThreads) {
+        System.out.println("  requests: " + stub.getTotalRequests() + " " + stub.getRequestCounts()
+                + ", injected errors: " + stub.getInjectedErrors() + ", not modified: " + stub.getNotModified()
+                + ", bytes sent: " + stub.getBytesSent());
+        System.out.println("  connections opened: " + stub.getConnectionsOpened()
+                + ", peak concurrent requests: " + stub.getPeakConcurrentRequests());
+        System.out.println("  threads: baseline " + baselineThreads + ", peak " + peakThreads);
+        for (Map.Entry<String, ECXRequestStats.Summary> entry : ECXMetrics.getRequests().summarize().entrySet()) {
+            ECXRequestStats.Summary summary = entry.getValue();
+            System.out.println("  client " + entry.getKey() + ": " + summary.getCount() + " requests, "
+                    + summary.getErrors() + " errors, " + summary.getBytes() + " bytes, latency (ms) p50 "
+                    + summary.getPercentileMillis(50) + ", p99 " + summary.getPercentileMillis(99) + ", max " + summary.getMaxMillis());
+        }
+
+        if (detection.isEmpty()) {
+            return;
+        }
+        Collections.sort(detection);
+        System.out.println("  build finished after its job ended (ms): p50 " + percentile(detection, 50)
+                + ", p95 " + percentile(detection, 95) + ", p99 " + percentile(detection, 99)
+                + ", max " + detection.get(detection.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+
+    private static double doubleProperty(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
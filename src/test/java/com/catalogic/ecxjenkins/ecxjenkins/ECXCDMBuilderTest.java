@@ -0,0 +1,145 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXEndpointHealth;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.StubECXServer;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ECXCDMBuilderTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void buildSucceedsWhenTheJobCompletes() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.getBuildersList().add(new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000", false, 60));
+
+            FreeStyleBuild build = r.buildAndAssertSuccess(p);
+            r.assertLogContains("COMPLETED", build);
+            assertEquals(1L, (long) stub.getRequestCounts().get("JOB"));
+        }
+    }
+
+    @Test
+    public void failedJobFailsTheBuild() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+            stub.setFailureRate(1);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.getBuildersList().add(new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000", false, 60));
+
+            r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+        }
+    }
+
+    @Test
+    public void severalJobsRunSideBySide() throws Exception {
+        try (StubECXServer stub = new StubECXServer(3)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.getBuildersList().add(new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000, 1001, 1002", false, 60));
+
+            FreeStyleBuild build = r.buildAndAssertSuccess(p);
+            for (String jobId : new String[]{"1000", "1001", "1002"}) {
+                r.assertLogContains("[" + jobId + "] ", build);
+            }
+            assertEquals(3L, (long) stub.getRequestCounts().get("JOB"));
+        }
+    }
+
+    @Test
+    public void severalJobsMarkTheBuildUnstableWhenOneFails() throws Exception {
+        try (StubECXServer stub = new StubECXServer(2)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+            stub.setFailureRate(1);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            ECXCDMBuilder builder = new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000, 1001", false, 60);
+            builder.setResultPolicy(ECXResultPolicy.MARK_UNSTABLE);
+            p.getBuildersList().add(builder);
+
+            FreeStyleBuild build = r.assertBuildStatus(Result.UNSTABLE, p.scheduleBuild2(0));
+            r.assertLogContains("2 of 2 ECX jobs did not complete", build);
+        }
+    }
+
+    @Test
+    public void waitingForASlotEndsAtTheMaximumWaitTime() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+            ECXJobSlots.setMaxJobs(1);
+            ECXJobSlots.Lease other = ECXJobSlots.lease(stub.getUrl());
+            assertTrue(other.tryAcquire());
+            try {
+                FreeStyleProject p = r.createFreeStyleProject();
+                p.getBuildersList().add(new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000", false, 1));
+
+                FreeStyleBuild build = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+                r.assertLogContains("freed up within 1 s", build);
+                assertNull(stub.getRequestCounts().get("JOB"));
+            } finally {
+                other.release();
+                ECXJobSlots.setMaxJobs(ECXJobSlots.DEFAULT_MAX_JOBS);
+            }
+        }
+    }
+
+    @Test
+    public void agentChecksTheEndpointInsteadOfTheController() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            p.setAssignedNode(r.createOnlineSlave());
+            ECXCDMBuilder builder = new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000", false, 60);
+            builder.setRunOnAgent(true);
+            p.getBuildersList().add(builder);
+
+            FreeStyleBuild build = r.buildAndAssertSuccess(p);
+            r.assertLogContains("is reachable from the agent", build);
+            assertNull(ECXEndpointHealth.getIfPresent("admin", stub.getUrl(), false));
+        }
+    }
+
+    @Test
+    public void configRoundtrip() throws Exception {
+        // the job picker lists the jobs of the configured URL while the page loads
+        try (StubECXServer stub = new StubECXServer(2)) {
+            FreeStyleProject p = r.createFreeStyleProject();
+            ECXCDMBuilder before = new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000, 1001", true, 300);
+            before.setMaxConcurrentJobs(2);
+            before.setJobDependencies("1001: 1000");
+            before.setResultPolicy(ECXResultPolicy.MARK_UNSTABLE);
+            before.setLaunchPolicy(ECXLaunchPolicy.ATTACH);
+            before.setTailJobLog(false);
+            before.setAutoTimeout(true);
+            before.setPollInterval(5);
+            p.getBuildersList().add(before);
+
+            r.configRoundtrip(p);
+
+            r.assertEqualDataBoundBeans(before, p.getBuildersList().get(ECXCDMBuilder.class));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.StubECXServer;
+import com.gargoylesoftware.htmlunit.html.HtmlCheckBoxInput;
+import com.gargoylesoftware.htmlunit.html.HtmlForm;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.queue.QueueTaskFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ECXCallbackActionTest {
+
+    private static final Pattern TOKEN = Pattern.compile("notify\\?token=([0-9a-f]+)");
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void unknownTokenIsNotFound() throws Exception {
+        assertEquals(404, request("POST", "ecx-callback/notify?token=0123456789abcdef"));
+        assertEquals(404, request("POST", "ecx-callback/notify"));
+    }
+
+    @Test
+    public void onlyPostIsAccepted() throws Exception {
+        assertEquals(405, request("GET", "ecx-callback/notify?token=0123456789abcdef"));
+    }
+
+    @Test
+    public void callbackEndsTheWaitRightAway() throws Exception {
+        enableCallbacks();
+
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(1000, 0);
+
+            FreeStyleProject p = r.createFreeStyleProject();
+            ECXCDMBuilder builder = new ECXCDMBuilder("admin", "password", stub.getUrl(), "1000", false, 600);
+            // without a callback the build sees the job end at its second poll, a minute after the launch
+            builder.setFastPollCount(0);
+            builder.setPollInterval(60);
+            builder.setMaxPollInterval(60);
+            builder.setPollJitter(0);
+            builder.setTailJobLog(false);
+            p.getBuildersList().add(builder);
+
+            QueueTaskFuture<FreeStyleBuild> future = p.scheduleBuild2(0);
+            FreeStyleBuild build = future.waitForStart();
+            String token = awaitToken(build);
+            while (stub.getJobEndTime("1000") < 0) {
+                Thread.sleep(50);
+            }
+            assertEquals(200, request("POST", "ecx-callback/notify?token=" + token));
+
+            r.assertBuildStatusSuccess(future);
+            assertTrue("the build took " + build.getDuration() + " ms", build.getDuration() < 30000);
+            assertEquals(404, request("POST", "ecx-callback/notify?token=" + token));
+        }
+    }
+
+    private void enableCallbacks() throws Exception {
+        HtmlForm form = r.createWebClient().goTo("configure").getFormByName("config");
+        form.<HtmlCheckBoxInput>getInputByName("_.callbacksEnabled").setChecked(true);
+        r.submit(form);
+
+        ECXCDMBuilder.DescriptorImpl global = (ECXCDMBuilder.DescriptorImpl) r.jenkins.getDescriptorByType(ECXCDMBuilder.DescriptorImpl.class);
+        assertTrue(global.getCallbacksEnabled());
+    }
+
+    private static String awaitToken(FreeStyleBuild build) throws Exception {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            Matcher matcher = TOKEN.matcher(JenkinsRule.getLog(build));
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+            Thread.sleep(50);
+        }
+        fail("the build did not print a callback URL:\n" + JenkinsRule.getLog(build));
+        return null;
+    }
+
+    private int request(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(r.getURL(), path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
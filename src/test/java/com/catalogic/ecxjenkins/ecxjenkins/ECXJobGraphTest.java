@@ -0,0 +1,126 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.BackoffPollSchedule;
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXJobSlots;
+import com.catalogic.ecx.sdk.StubECXServer;
+import hudson.util.StreamTaskListener;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ECXJobGraphTest {
+
+    private static final List<String> JOBS = Arrays.asList("1001", "1002", "1003", "1004");
+
+    @Test
+    public void upstreamJobsComeFirst() {
+        ECXJobGraph graph = ECXJobGraph.parse(JOBS, "1001: 1003, 1004\n# comment\n\n1004: 1002");
+
+        assertTrue(graph.hasDependencies());
+        assertEquals(Arrays.asList("1003", "1002", "1004", "1001"), graph.getJobIds());
+        assertEquals(Arrays.asList("1003", "1004"), graph.getUpstream("1001"));
+        assertEquals(Collections.<String>emptyList(), graph.getUpstream("1002"));
+    }
+
+    @Test
+    public void noLinesNoDependencies() {
+        ECXJobGraph graph = ECXJobGraph.parse(JOBS, null);
+
+        assertFalse(graph.hasDependencies());
+        assertEquals(JOBS, graph.getJobIds());
+    }
+
+    @Test
+    public void rejectsCycles() {
+        assertRejected("1001: 1002\n1002: 1003\n1003: 1001", "cycle");
+        assertRejected("1001: 1001", "itself");
+    }
+
+    @Test
+    public void rejectsUnknownJobsAndBadLines() {
+        assertRejected("1001: 2000", "2000");
+        assertRejected("2000: 1001", "2000");
+        assertRejected("1001 1002", "Expected");
+    }
+
+    @Test
+    public void jobsDependingOnAFailedJobAreSkipped() throws Exception {
+        try (StubECXServer stub = new StubECXServer(10)) {
+            stub.setLatency(0);
+            stub.setJobDuration(200, 0);
+            stub.setFailureRate(1);
+
+            List<ECXJobOutcome> outcomes = runner(stub, JOBS, "1002: 1001\n1003: 1002").runJobs(
+                    JOBS, Collections.<String, ECXJobRunner.Resume>emptyMap(), 4, StreamTaskListener.fromStdout(), null);
+
+            assertTrue(outcomes.get(0).isFailed() && !outcomes.get(0).isSkipped());
+            assertTrue(outcomes.get(1).isSkipped());
+            assertTrue(outcomes.get(2).isSkipped());
+            assertTrue(outcomes.get(3).isFailed() && !outcomes.get(3).isSkipped());
+            assertEquals(2L, (long) stub.getRequestCounts().get("JOB"));
+        }
+    }
+
+    @Test
+    public void jobsWaitForASlotOfTheAppliance() throws Exception {
+        try (StubECXServer stub = new StubECXServer(10)) {
+            stub.setLatency(0);
+            stub.setJobDuration(300, 0);
+            ECXJobSlots.setMaxJobs(1);
+            final String url = stub.getUrl();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicInteger peak = new AtomicInteger();
+            Thread sampler = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        peak.set(Math.max(peak.get(), ECXJobSlots.getRunning(url)));
+                        Thread.yield();
+                    }
+                }
+            });
+            sampler.start();
+            try {
+                List<String> jobIds = Arrays.asList("1001", "1002", "1003");
+                List<ECXJobOutcome> outcomes = runner(stub, jobIds, "1003: 1001").runJobs(
+                        jobIds, Collections.<String, ECXJobRunner.Resume>emptyMap(), 3, StreamTaskListener.fromStdout(), null);
+
+                for (ECXJobOutcome outcome : outcomes) {
+                    assertFalse(outcome.getMessage(), outcome.isFailed());
+                }
+            } finally {
+                running.set(false);
+                sampler.join();
+                ECXJobSlots.setMaxJobs(ECXJobSlots.DEFAULT_MAX_JOBS);
+            }
+            assertEquals(1, peak.get());
+            assertEquals(0, ECXJobSlots.getRunning(url));
+        }
+    }
+
+    private static ECXJobRunner runner(StubECXServer stub, List<String> jobIds, String dependencies) {
+        ECXJobRunner runner = new ECXJobRunner(new ECXEndpoint("admin", "password", stub.getUrl(), false),
+                new BackoffPollSchedule(5, 100, 100, 1, 100, 0), 60, ECXLaunchPolicy.FORCE, false, false, null);
+        runner.useGraph(ECXJobGraph.parse(jobIds, dependencies), false);
+        return runner;
+    }
+
+    private static void assertRejected(String dependencies, String message) {
+        try {
+            ECXJobGraph.parse(JOBS, dependencies);
+            fail("accepted " + dependencies);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
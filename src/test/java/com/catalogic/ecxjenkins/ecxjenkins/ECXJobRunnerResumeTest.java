@@ -0,0 +1,165 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.BackoffPollSchedule;
+import com.catalogic.ecx.sdk.ECXEndpoint;
+import com.catalogic.ecx.sdk.ECXJobLogTail;
+import com.catalogic.ecx.sdk.ECXSdk;
+import com.catalogic.ecx.sdk.StubECXServer;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * What {@link ECXJobRunner} tells its {@link ECXJobRunner.Progress} and when it reattaches to a run
+ * launched by an earlier build.
+ */
+public class ECXJobRunnerResumeTest {
+
+    private final TaskListener listener = StreamTaskListener.fromStdout();
+    private final RecordingProgress progress = new RecordingProgress();
+    private StubECXServer stub;
+    private ECXEndpoint endpoint;
+    private ECXSdk ecx;
+
+    @Before
+    public void startStub() throws Exception {
+        stub = new StubECXServer(10);
+        stub.setLatency(0);
+        stub.setJobDuration(500, 0);
+        endpoint = new ECXEndpoint("admin", "password", stub.getUrl(), false);
+        ecx = new ECXSdk(endpoint);
+        ecx.connect();
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void finishedRunIsEnded() throws Exception {
+        ECXJobOutcome outcome = run("1001", null, 60);
+
+        assertFalse(outcome.getMessage(), outcome.isFailed());
+        assertTrue(outcome.isWatchedFromLaunch());
+        assertEquals(Collections.singletonList("launched 1001"), progress.events.subList(0, 1));
+        assertEquals("ended 1001", progress.last());
+    }
+
+    @Test
+    public void timedOutRunIsAbandoned() throws Exception {
+        stub.setJobDuration(5000, 0);
+
+        ECXJobOutcome outcome = run("1001", null, 1);
+
+        assertTrue(outcome.isTimedOut());
+        assertFalse(outcome.isWatchedFromLaunch());
+        assertEquals("abandoned 1001", progress.last());
+    }
+
+    @Test
+    public void reattachesToTheRecordedSession() throws Exception {
+        ecx.runJob("1002");
+        String sessionId = ecx.getLatestJobSessionId("1002");
+
+        ECXJobOutcome outcome = run("1002", new ECXJobRunner.Resume(sessionId, null, System.currentTimeMillis() - 60 * 1000L, null), 60);
+
+        assertFalse(outcome.getMessage(), outcome.isFailed());
+        assertFalse(outcome.isWatchedFromLaunch());
+        assertTrue(outcome.getDurationMillis() < 60 * 1000L);
+        assertEquals(1L, (long) stub.getRequestCounts().get("JOB"));
+        assertFalse(progress.events.contains("launched 1002"));
+        assertEquals("ended 1002", progress.last());
+    }
+
+    @Test
+    public void runThatEndedUnmonitoredIsNotLaunchedAgain() throws Exception {
+        stub.setJobDuration(0, 0);
+        ecx.runJob("1003");
+        String sessionId = ecx.getLatestJobSessionId("1003");
+
+        ECXJobOutcome outcome = run("1003", new ECXJobRunner.Resume(sessionId, null, System.currentTimeMillis(), null), 60);
+
+        assertFalse(outcome.getMessage(), outcome.isFailed());
+        assertFalse(outcome.isWatchedFromLaunch());
+        assertEquals(-1, outcome.getDurationMillis());
+        assertEquals(1L, (long) stub.getRequestCounts().get("JOB"));
+        assertEquals(Collections.singletonList("ended 1003"), progress.events);
+    }
+
+    @Test
+    public void anotherSessionAbandonsTheRecordAndLaunches() throws Exception {
+        ecx.runJob("1004");
+        String sessionId = ecx.getLatestJobSessionId("1004");
+        ecx.runJob("1004");
+
+        run("1004", new ECXJobRunner.Resume(sessionId, null, System.currentTimeMillis(), null), 60);
+
+        assertEquals(3L, (long) stub.getRequestCounts().get("JOB"));
+        assertEquals("abandoned 1004", progress.events.get(0));
+        assertEquals("launched 1004", progress.events.get(1));
+    }
+
+    @Test
+    public void withoutSessionOnlyASessionStartedAroundTheLaunchIsTheRun() {
+        String before = ecx.getLatestJobSessionId("1005");
+        long launchedAt = System.currentTimeMillis();
+        ecx.runJob("1005");
+
+        assertTrue(ECXJobRunner.isSameRun(ecx, "1005", new ECXJobRunner.Resume(null, before, launchedAt, null)));
+        assertFalse(ECXJobRunner.isSameRun(ecx, "1005", new ECXJobRunner.Resume(null, ecx.getLatestJobSessionId("1005"), launchedAt, null)));
+        assertFalse(ECXJobRunner.isSameRun(ecx, "1005", new ECXJobRunner.Resume(null, before, launchedAt - 60 * 60 * 1000L, null)));
+        assertFalse(ECXJobRunner.isSameRun(ecx, "1006", new ECXJobRunner.Resume(null, null, launchedAt, null)));
+    }
+
+    private ECXJobOutcome run(String jobId, ECXJobRunner.Resume resume, int maxWaitTime) throws InterruptedException {
+        ECXJobRunner runner = new ECXJobRunner(endpoint, new BackoffPollSchedule(5, 100, 100, 1, 100, 0), maxWaitTime,
+                ECXLaunchPolicy.FORCE, false, false, progress);
+        Map<String, ECXJobRunner.Resume> resumes = resume == null
+                ? Collections.<String, ECXJobRunner.Resume>emptyMap() : Collections.singletonMap(jobId, resume);
+        return runner.runJobs(Collections.singletonList(jobId), resumes, 1, listener, null).get(0);
+    }
+
+    private static final class RecordingProgress implements ECXJobRunner.Progress {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void launched(String jobId, long launchedAt, String previousSessionId) {
+            events.add("launched " + jobId);
+        }
+
+        @Override
+        public void session(String jobId, String sessionId) {
+        }
+
+        @Override
+        public void status(String jobId, String status, ECXJobLogTail logTail) {
+        }
+
+        @Override
+        public void ended(String jobId, String status) {
+            events.add("ended " + jobId);
+        }
+
+        @Override
+        public void abandoned(String jobId, String reason) {
+            events.add("abandoned " + jobId);
+        }
+
+        private String last() {
+            return events.get(events.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.catalogic.ecxjenkins.ecxjenkins;
+
+import com.catalogic.ecx.sdk.ECXJobHistory;
+import com.catalogic.ecx.sdk.StubECXServer;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ECXRunJobStepTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Before
+    public void addCredentials() throws Exception {
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "ecx", "ECX login", "admin", "password"));
+    }
+
+    @Test
+    public void stepReturnsTheFinalStatus() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+
+            WorkflowJob p = pipeline("def status = ecxRunJob " + arguments(stub) + "\n"
+                    + "echo \"ECX job ended with ${status}\"");
+
+            WorkflowRun run = r.assertBuildStatusSuccess(p.scheduleBuild2(0));
+            r.assertLogContains("ECX job ended with COMPLETED", run);
+            assertEquals(1L, (long) stub.getRequestCounts().get("JOB"));
+
+            List<ECXJobHistory.Entry> entries = ECXJobHistory.get(stub.getUrl(), "1000").getEntries();
+            assertEquals(1, entries.size());
+            assertEquals("COMPLETED", entries.get(0).getStatus());
+        }
+    }
+
+    @Test
+    public void failedJobFailsTheStep() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(500, 0);
+            stub.setFailureRate(1);
+
+            WorkflowJob p = pipeline("ecxRunJob " + arguments(stub) + "\n"
+                    + "echo 'not reached'");
+
+            WorkflowRun run = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+            r.assertLogContains("ECX 1000 Failed!", run);
+            r.assertLogNotContains("not reached", run);
+        }
+    }
+
+    @Test
+    public void timeoutFailsTheStep() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            stub.setLatency(0);
+            stub.setJobDuration(60000, 0);
+
+            WorkflowJob p = pipeline("ecxRunJob " + arguments(stub) + ", maxWaitTime: 1");
+
+            WorkflowRun run = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+            r.assertLogContains("timed out waiting for the ECX job to complete", run);
+        }
+    }
+
+    @Test
+    public void unknownCredentialsFailTheStep() throws Exception {
+        try (StubECXServer stub = new StubECXServer(1)) {
+            WorkflowJob p = pipeline("ecxRunJob credentialsId: 'missing', url: '" + stub.getUrl() + "', job: '1000'");
+
+            WorkflowRun run = r.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+            r.assertLogContains("No username and password credentials with the id missing", run);
+            assertNull(stub.getRequestCounts().get("JOB"));
+        }
+    }
+
+    private WorkflowJob pipeline(String script) throws Exception {
+        WorkflowJob p = r.jenkins.createProject(WorkflowJob.class, "p");
+        p.setDefinition(new CpsFlowDefinition(script, true));
+        return p;
+    }
+
+    private static String arguments(StubECXServer stub) {
+        return "credentialsId: 'ecx', url: '" + stub.getUrl() + "', job: '1000', tailJobLog: false";
+    }
+}